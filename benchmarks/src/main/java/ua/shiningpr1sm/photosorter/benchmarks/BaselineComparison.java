@@ -0,0 +1,126 @@
+package ua.shiningpr1sm.photosorter.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares a JMH CSV result file ({@code -rf csv -rff results.csv}) against a stored baseline and exits with
+ * status 1 when any benchmark got slower than the tolerance allows, after accounting for both error margins.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar ua.shiningpr1sm.photosorter.benchmarks.BaselineComparison
+ * baselines/baseline.csv results.csv [tolerancePercent]}
+ */
+public final class BaselineComparison {
+    private static final double DEFAULT_TOLERANCE_PERCENT = 10;
+
+    private record Score(String mode, double score, double error, String unit) {
+        boolean higherIsBetter() {
+            return mode.equals("thrpt");
+        }
+    }
+
+    private BaselineComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparison <baseline.csv> <results.csv> [tolerancePercent]");
+            System.exit(2);
+        }
+        double tolerance = (args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_TOLERANCE_PERCENT) / 100;
+        Map<String, Score> baseline = read(Paths.get(args[0]));
+        Map<String, Score> results = read(Paths.get(args[1]));
+        int regressions = 0;
+        for (Map.Entry<String, Score> entry : results.entrySet()) {
+            Score current = entry.getValue();
+            Score previous = baseline.get(entry.getKey());
+            if (previous == null) {
+                System.out.printf(Locale.ROOT, "NEW        %-90s %12.3f %s%n", entry.getKey(), current.score(), current.unit());
+                continue;
+            }
+            if (!previous.unit().equals(current.unit()) || !previous.mode().equals(current.mode())) {
+                System.out.printf(Locale.ROOT, "SKIPPED    %-90s %s/%s vs %s/%s%n", entry.getKey(),
+                        previous.mode(), previous.unit(), current.mode(), current.unit());
+                continue;
+            }
+            double change = (current.score() - previous.score()) / previous.score();
+            double slowdown = previous.higherIsBetter() ? -change : change;
+            double worstCase = previous.higherIsBetter()
+                    ? (previous.score() - previous.error()) - (current.score() + current.error())
+                    : (current.score() - current.error()) - (previous.score() + previous.error());
+            boolean regressed = slowdown > tolerance && worstCase > 0;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf(Locale.ROOT, "%-10s %-90s %12.3f -> %12.3f %s (%+.1f%%)%n", regressed ? "REGRESSED" : "ok",
+                    entry.getKey(), previous.score(), current.score(), current.unit(), change * 100);
+        }
+        for (String missing : baseline.keySet()) {
+            if (!results.containsKey(missing)) {
+                System.out.printf(Locale.ROOT, "MISSING    %s%n", missing);
+            }
+        }
+        System.out.println(regressions + " regression(s) beyond " + Math.round(tolerance * 100) + "%");
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    private static Map<String, Score> read(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty()) {
+            throw new IOException("Empty result file: " + file);
+        }
+        List<String> header = split(lines.get(0));
+        int benchmark = header.indexOf("Benchmark");
+        int mode = header.indexOf("Mode");
+        int score = header.indexOf("Score");
+        int error = header.indexOf("Score Error (99.9%)");
+        int unit = header.indexOf("Unit");
+        if (benchmark < 0 || mode < 0 || score < 0 || error < 0 || unit < 0) {
+            throw new IOException("Not a JMH CSV result file: " + file);
+        }
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> columns = split(line);
+            StringBuilder key = new StringBuilder(columns.get(benchmark));
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ") && i < columns.size() && !columns.get(i).isEmpty()) {
+                    key.append(' ').append(header.get(i).substring("Param: ".length())).append('=').append(columns.get(i));
+                }
+            }
+            String errorText = columns.get(error);
+            scores.put(key.toString(), new Score(columns.get(mode), Double.parseDouble(columns.get(score)),
+                    errorText.isEmpty() || errorText.equals("NaN") ? 0 : Double.parseDouble(errorText), columns.get(unit)));
+        }
+        return scores;
+    }
+
+    private static List<String> split(String line) {
+        List<String> columns = new ArrayList<>();
+        StringBuilder column = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                columns.add(column.toString());
+                column.setLength(0);
+            } else {
+                column.append(c);
+            }
+        }
+        columns.add(column.toString());
+        return columns;
+    }
+}
@@ -0,0 +1,103 @@
+package ua.shiningpr1sm.photosorter.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.shiningpr1sm.photosorter.ImageCropper;
+import ua.shiningpr1sm.photosorter.ImagePyramid;
+import ua.shiningpr1sm.photosorter.TileViewer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CropBenchmark {
+    private static final int VIEW_WIDTH = 1700;
+    private static final int VIEW_HEIGHT = 970;
+    private static final int CROP_BYTES_PER_PIXEL = 64;
+
+    @Param({"jpg", "png"})
+    public String format;
+
+    @Param({"12", "48"})
+    public int megapixels;
+
+    private File image;
+    private Path target;
+    private Rectangle aligned;
+    private Rectangle unaligned;
+    private TileViewer viewer;
+    private BufferedImage canvas;
+
+    @Setup
+    public void setUp() throws IOException {
+        image = Fixtures.image(format, megapixels);
+        target = Files.createTempFile(Fixtures.root(), "crop", "." + format);
+        ImagePyramid pyramid = ImagePyramid.decode(image, maxPixels());
+        int width = pyramid.getWidth();
+        int height = pyramid.getHeight();
+        aligned = new Rectangle(width / 4 / 16 * 16, height / 4 / 16 * 16, width / 2 / 16 * 16, height / 2 / 16 * 16);
+        unaligned = new Rectangle(aligned.x + 5, aligned.y + 3, aligned.width - 7, aligned.height - 9);
+        viewer = new TileViewer(pyramid, width, height);
+        viewer.setSize(VIEW_WIDTH, VIEW_HEIGHT);
+        viewer.fitToWindow();
+        canvas = new BufferedImage(VIEW_WIDTH, VIEW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        viewer.close();
+        Files.deleteIfExists(target);
+    }
+
+    @Benchmark
+    public ImagePyramid decodePyramid() throws IOException {
+        ImagePyramid pyramid = ImagePyramid.decode(image, maxPixels());
+        pyramid.close();
+        return pyramid;
+    }
+
+    @Benchmark
+    public BufferedImage paintFitted() {
+        Graphics2D g2d = canvas.createGraphics();
+        try {
+            viewer.paint(g2d);
+        } finally {
+            g2d.dispose();
+        }
+        return canvas;
+    }
+
+    @Benchmark
+    public ImageCropper.Result cropAligned() throws IOException {
+        return ImageCropper.crop(image.toPath(), target, aligned, ImageCropper.DEFAULT_QUALITY);
+    }
+
+    @Benchmark
+    public ImageCropper.Result cropUnaligned() throws IOException {
+        return ImageCropper.crop(image.toPath(), target, unaligned, ImageCropper.DEFAULT_QUALITY);
+    }
+
+    private static long maxPixels() {
+        return Runtime.getRuntime().maxMemory() / CROP_BYTES_PER_PIXEL;
+    }
+}
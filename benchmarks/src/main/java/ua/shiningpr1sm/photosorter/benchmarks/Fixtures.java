@@ -0,0 +1,177 @@
+package ua.shiningpr1sm.photosorter.benchmarks;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public final class Fixtures {
+    private static final long SEED = 42;
+    private static final String COMPLETE_MARKER = ".complete";
+    private static final String[] SOURCE_EXTENSIONS = {"jpg", "JPG", "jpeg", "png", "txt", "mp4", "m4a", "cr2", "xmp", "json", "db"};
+    private static final String[] WORDS = {"photo", "sorter", "folder", "preview", "crop", "move", "bin", "journal",
+            "thumbnail", "decode", "scale", "orientation", "metadata", "queue", "backup", "tile"};
+
+    private Fixtures() {
+    }
+
+    public static Path root() throws IOException {
+        Path root = Paths.get(System.getProperty("photosorter.bench.fixtures", "target/fixtures")).toAbsolutePath();
+        Files.createDirectories(root);
+        return root;
+    }
+
+    public static File image(String format, int megapixels) throws IOException {
+        Path file = root().resolve("images").resolve(megapixels + "mp." + format);
+        if (!Files.isRegularFile(file)) {
+            int width = (int) Math.round(Math.sqrt(megapixels * 1_000_000.0 * 4 / 3));
+            int height = megapixels * 1_000_000 / width;
+            writeAtomically(file, output -> {
+                if (!ImageIO.write(photoLikeImage(width, height), format, output)) {
+                    throw new IOException("No image writer for " + format);
+                }
+            });
+        }
+        return file.toFile();
+    }
+
+    public static File textFile(int megabytes) throws IOException {
+        Path file = root().resolve("text").resolve(megabytes + "mb.txt");
+        if (!Files.isRegularFile(file)) {
+            writeAtomically(file, output -> {
+                Random random = new Random(SEED);
+                long limit = megabytes * 1024L * 1024;
+                long written = 0;
+                StringBuilder line = new StringBuilder();
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 1 << 16);
+                for (long number = 1; written < limit; number++) {
+                    line.setLength(0);
+                    line.append(number).append(':');
+                    int words = 2 + random.nextInt(18);
+                    for (int i = 0; i < words; i++) {
+                        line.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+                    }
+                    line.append('\n');
+                    writer.write(line.toString());
+                    written += line.length();
+                }
+                writer.flush();
+            });
+        }
+        return file.toFile();
+    }
+
+    public static File sourceFolder(int entries) throws IOException {
+        return generate("source-" + entries, folder -> {
+            for (int i = 0; i < entries; i++) {
+                Files.createFile(folder.resolve(String.format("IMG_%07d.%s", i, SOURCE_EXTENSIONS[i % SOURCE_EXTENSIONS.length])));
+            }
+        });
+    }
+
+    public static File destinationTree(int entries) throws IOException {
+        return generate("tree-" + entries, folder -> {
+            for (int i = 0; i < entries; i++) {
+                if (i % 10 == 0) {
+                    Files.createDirectory(folder.resolve(String.format("Folder_%07d", i)));
+                } else {
+                    Files.createFile(folder.resolve(String.format("IMG_%07d.jpg", i)));
+                }
+            }
+            Files.createDirectories(folder.resolve("Del").resolve("Delete_folder_0"));
+        });
+    }
+
+    public static File copyOf(File file, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path copy = directory.resolve(file.getName());
+        Files.copy(file.toPath(), copy, StandardCopyOption.REPLACE_EXISTING);
+        return copy.toFile();
+    }
+
+    public static File randomFile(Path directory, String name, int megabytes) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(name);
+        Random random = new Random(SEED);
+        byte[] chunk = new byte[1 << 20];
+        try (OutputStream output = Files.newOutputStream(file)) {
+            for (int i = 0; i < megabytes; i++) {
+                random.nextBytes(chunk);
+                output.write(chunk);
+            }
+        }
+        return file.toFile();
+    }
+
+    public static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            for (Path entry : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(entry);
+            }
+        }
+    }
+
+    static BufferedImage photoLikeImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(SEED);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = 255 * x / width;
+                int green = 255 * y / height;
+                int blue = 128 + (int) (64 * Math.sin((x + y) / 97.0));
+                int noise = random.nextInt(24) - 12;
+                row[x] = clamp(red + noise) << 16 | clamp(green + noise) << 8 | clamp(blue + noise);
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    private interface Writer {
+        void write(OutputStream output) throws IOException;
+    }
+
+    private interface Generator {
+        void generate(Path folder) throws IOException;
+    }
+
+    private static void writeAtomically(Path file, Writer writer) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path part = file.resolveSibling(file.getFileName() + ".part");
+        try (OutputStream output = Files.newOutputStream(part)) {
+            writer.write(output);
+        }
+        Files.move(part, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static File generate(String name, Generator generator) throws IOException {
+        Path folder = root().resolve(name);
+        if (Files.exists(folder.resolve(COMPLETE_MARKER))) {
+            return folder.toFile();
+        }
+        deleteRecursively(folder);
+        Files.createDirectories(folder);
+        generator.generate(folder);
+        Files.createFile(folder.resolve(COMPLETE_MARKER));
+        return folder.toFile();
+    }
+}
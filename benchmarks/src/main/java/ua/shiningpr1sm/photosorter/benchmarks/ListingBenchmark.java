@@ -0,0 +1,60 @@
+package ua.shiningpr1sm.photosorter.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.shiningpr1sm.photosorter.FolderTree;
+import ua.shiningpr1sm.photosorter.SourceFileQueue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ListingBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int entries;
+
+    private File sourceFolder;
+    private File destinationTree;
+
+    @Setup
+    public void setUp() throws IOException {
+        sourceFolder = Fixtures.sourceFolder(entries);
+        destinationTree = Fixtures.destinationTree(entries);
+    }
+
+    @Benchmark
+    public List<File> loadFolders() {
+        return new FolderTree(destinationTree).childFolders(destinationTree);
+    }
+
+    @Benchmark
+    public int sourceFilter() throws InterruptedException {
+        CountDownLatch complete = new CountDownLatch(1);
+        SourceFileQueue[] queue = new SourceFileQueue[1];
+        queue[0] = new SourceFileQueue(() -> -1, () -> {
+            if (queue[0].isComplete()) {
+                complete.countDown();
+            }
+        });
+        queue[0].start(sourceFolder);
+        complete.await();
+        return queue[0].size();
+    }
+}
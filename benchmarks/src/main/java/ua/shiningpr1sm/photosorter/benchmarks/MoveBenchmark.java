@@ -0,0 +1,96 @@
+package ua.shiningpr1sm.photosorter.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.shiningpr1sm.photosorter.MoveEngine;
+import ua.shiningpr1sm.photosorter.RecycleBin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every invocation moves the fixture file once, alternating between the source and the destination, so the
+ * file never has to be restored outside the measured code. The cross-device case needs a second file system:
+ * {@code -Dphotosorter.bench.otherFileSystem=<directory>}, defaulting to {@code /dev/shm} where it exists.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class MoveBenchmark {
+    @Param({"same", "cross"})
+    public String fileSystem;
+
+    @Param({"4", "64"})
+    public int megabytes;
+
+    @Param({"true", "false"})
+    public boolean verifyChecksum;
+
+    private Path sourceRoot;
+    private Path workspace;
+    private Path source;
+    private File destination;
+    private RecycleBin recycleBin;
+    private MoveEngine moveEngine;
+    private boolean moved;
+
+    @Setup
+    public void setUp() throws IOException {
+        sourceRoot = Files.createTempDirectory(Fixtures.root(), "move");
+        workspace = "cross".equals(fileSystem) ? Files.createTempDirectory(otherFileSystem(sourceRoot), "move") : sourceRoot;
+        source = Fixtures.randomFile(sourceRoot.resolve("source"), "IMG_0001.jpg", megabytes).toPath();
+        destination = workspace.resolve("destination").toFile();
+        Files.createDirectories(destination.toPath());
+        recycleBin = new RecycleBin(workspace.toFile(), "0");
+        moveEngine = new MoveEngine(verifyChecksum);
+        moved = false;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.deleteRecursively(sourceRoot);
+        Fixtures.deleteRecursively(workspace);
+    }
+
+    @Benchmark
+    public MoveEngine.MoveResult moveToFolder() throws IOException {
+        return pingPong(new File(destination, source.getFileName().toString()).toPath());
+    }
+
+    @Benchmark
+    public MoveEngine.MoveResult moveToBin() throws IOException {
+        return pingPong(recycleBin.targetFor(source.toFile()).toPath());
+    }
+
+    private MoveEngine.MoveResult pingPong(Path away) throws IOException {
+        MoveEngine.MoveResult result = moved ? moveEngine.move(away, source) : moveEngine.move(source, away);
+        moved = !moved;
+        return result;
+    }
+
+    private static Path otherFileSystem(Path sourceRoot) throws IOException {
+        Path other = Paths.get(System.getProperty("photosorter.bench.otherFileSystem", "/dev/shm"));
+        if (!Files.isDirectory(other) || Files.getFileStore(other).equals(Files.getFileStore(sourceRoot))) {
+            throw new IllegalStateException("Set -Dphotosorter.bench.otherFileSystem to a directory on a different file system than "
+                    + sourceRoot);
+        }
+        return other;
+    }
+}
@@ -0,0 +1,74 @@
+package ua.shiningpr1sm.photosorter.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.shiningpr1sm.photosorter.ImagePreviewLoader;
+import ua.shiningpr1sm.photosorter.ImageScaler;
+import ua.shiningpr1sm.photosorter.PreviewDecoder;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PreviewBenchmark {
+    private static final int PREVIEW_WIDTH = 1550;
+    private static final int PREVIEW_HEIGHT = 830;
+
+    @Param({"jpg", "png"})
+    public String format;
+
+    @Param({"2", "12", "48"})
+    public int megapixels;
+
+    private File image;
+    private ImagePreviewLoader loader;
+
+    @Setup
+    public void setUp() throws IOException {
+        image = Fixtures.image(format, megapixels);
+    }
+
+    @Setup(Level.Invocation)
+    public void startLoader() {
+        loader = new ImagePreviewLoader(1, 64L * 1024 * 1024);
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopLoader() {
+        loader.shutdown();
+    }
+
+    @Benchmark
+    public BufferedImage showImagePreview() {
+        return loader.load(image, PREVIEW_WIDTH, PREVIEW_HEIGHT).join();
+    }
+
+    @Benchmark
+    public BufferedImage decode() throws IOException {
+        return PreviewDecoder.decode(image, PREVIEW_WIDTH, PREVIEW_HEIGHT).image();
+    }
+
+    @Benchmark
+    public BufferedImage decodeAndScale() throws IOException {
+        PreviewDecoder.Result decoded = PreviewDecoder.decode(image, PREVIEW_WIDTH, PREVIEW_HEIGHT);
+        return ImageScaler.scaleToFit(decoded.image(), PREVIEW_WIDTH, PREVIEW_HEIGHT, ImageScaler.Quality.BALANCED);
+    }
+}
@@ -0,0 +1,78 @@
+package ua.shiningpr1sm.photosorter.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.shiningpr1sm.photosorter.ImageScaler;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ScaleBenchmark {
+    private static final int TARGET_WIDTH = 1000;
+    private static final int TARGET_HEIGHT = 630;
+
+    @Param({"2000x1500", "6000x4000"})
+    public String sourceSize;
+
+    private BufferedImage source;
+
+    @Setup
+    public void setUp() {
+        String[] parts = sourceSize.split("x");
+        source = noiseImage(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+    }
+
+    @Benchmark
+    public BufferedImage getScaledInstanceSmooth() {
+        BufferedImage target = new BufferedImage(TARGET_WIDTH, TARGET_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = target.createGraphics();
+        g2d.drawImage(source.getScaledInstance(TARGET_WIDTH, TARGET_HEIGHT, Image.SCALE_SMOOTH), 0, 0, null);
+        g2d.dispose();
+        return target;
+    }
+
+    @Benchmark
+    public BufferedImage scalerFast() {
+        return ImageScaler.scaleToFit(source, TARGET_WIDTH, TARGET_HEIGHT, ImageScaler.Quality.FAST);
+    }
+
+    @Benchmark
+    public BufferedImage scalerBalanced() {
+        return ImageScaler.scaleToFit(source, TARGET_WIDTH, TARGET_HEIGHT, ImageScaler.Quality.BALANCED);
+    }
+
+    @Benchmark
+    public BufferedImage scalerHigh() {
+        return ImageScaler.scaleToFit(source, TARGET_WIDTH, TARGET_HEIGHT, ImageScaler.Quality.HIGH);
+    }
+
+    static BufferedImage noiseImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(42);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                row[x] = random.nextInt(0x1000000);
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+}
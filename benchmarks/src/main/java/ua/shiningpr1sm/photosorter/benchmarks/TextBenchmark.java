@@ -0,0 +1,54 @@
+package ua.shiningpr1sm.photosorter.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.shiningpr1sm.photosorter.TextFileWindow;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TextBenchmark {
+    private static final int PAGE_LINES = 60;
+
+    @Param({"16", "256"})
+    public int megabytes;
+
+    private File text;
+
+    @Setup
+    public void setUp() throws IOException {
+        text = Fixtures.textFile(megabytes);
+    }
+
+    @Benchmark
+    public TextFileWindow.Page openFirstPage() throws IOException {
+        try (TextFileWindow window = TextFileWindow.open(text.toPath())) {
+            return window.read(window.dataStart(), PAGE_LINES);
+        }
+    }
+
+    @Benchmark
+    public long buildLineIndex() throws IOException {
+        try (TextFileWindow window = TextFileWindow.open(text.toPath())) {
+            window.buildLineIndex(() -> {
+            });
+            return window.getIndexedLines();
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+public class BatchSorter {
+    private static final String BIN_TARGET = "@bin";
+    private static final int QUEUED_FILES_PER_THREAD = 64;
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: --batch <rules-file> [--source <folder>] [--destination <folder>] [--dry-run] [--threads <n>]",
+            "Rules are read top to bottom and the first match wins. One rule per line: <conditions> -> <target>",
+            "  conditions (all must match): ext:jpg,jpeg  name:<regex for the whole file name>  exif-date  *",
+            "  target: a folder relative to the destination, may use {yyyy} {MM} {dd} from the EXIF capture date,",
+            "          or @bin to move the file to the bin",
+            "Example:",
+            "  ext:mp4,m4v -> Videos",
+            "  name:Screenshot.* -> Screenshots",
+            "  name:IMG-\\d{8}-WA\\d+\\.jpg -> @bin",
+            "  ext:jpg,jpeg exif-date -> {yyyy}/{MM}");
+
+    private final File sourceFolder;
+    private final File destinationFolder;
+    private final List<Rule> rules;
+    private final boolean dryRun;
+    private final int threads;
+    private final MoveEngine moveEngine = new MoveEngine(Boolean.parseBoolean(System.getProperty("photosorter.verifyMoves", "true")));
+    private final RecycleBin recycleBin;
+    private final AtomicLongArray ruleCounts;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong unmatched = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytesMoved = new AtomicLong();
+
+    record Rule(int line, String text, Set<String> extensions, Pattern namePattern, boolean needsDate, String target) {
+        boolean matches(Candidate candidate) {
+            if (extensions != null && !extensions.contains(candidate.extension())) {
+                return false;
+            }
+            if (namePattern != null && !namePattern.matcher(candidate.name()).matches()) {
+                return false;
+            }
+            return !needsDate || candidate.captureDate() != null;
+        }
+
+        String resolve(Candidate candidate) {
+            if (!needsDate) {
+                return target;
+            }
+            LocalDateTime date = candidate.captureDate();
+            return target.replace("{yyyy}", String.format("%04d", date.getYear()))
+                    .replace("{MM}", String.format("%02d", date.getMonthValue()))
+                    .replace("{dd}", String.format("%02d", date.getDayOfMonth()));
+        }
+    }
+
+    static final class Candidate {
+        private final File file;
+        private final String name;
+        private final String extension;
+        private LocalDateTime captureDate;
+        private boolean metadataRead;
+
+        Candidate(File file) {
+            this.file = file;
+            this.name = file.getName();
+            int lastDot = name.lastIndexOf('.');
+            this.extension = lastDot > 0 ? name.substring(lastDot + 1).toLowerCase(Locale.ROOT) : "";
+        }
+
+        String name() {
+            return name;
+        }
+
+        String extension() {
+            return extension;
+        }
+
+        LocalDateTime captureDate() {
+            if (!metadataRead) {
+                metadataRead = true;
+                ImageMetadataReader.Metadata metadata = ImageMetadataReader.read(file);
+                captureDate = metadata != null ? metadata.captureDate() : null;
+            }
+            return captureDate;
+        }
+    }
+
+    public BatchSorter(File sourceFolder, File destinationFolder, List<Rule> rules, boolean dryRun, int threads) {
+        this.sourceFolder = sourceFolder;
+        this.destinationFolder = destinationFolder;
+        this.rules = rules;
+        this.dryRun = dryRun;
+        this.threads = threads;
+        this.recycleBin = new RecycleBin(destinationFolder, String.format("%010d", new Random().nextInt(1_000_000_000)));
+        this.ruleCounts = new AtomicLongArray(rules.size());
+    }
+
+    public static int run(String[] args) {
+        Path rulesFile = null;
+        File source = null;
+        File destination = null;
+        boolean dryRun = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--dry-run" -> dryRun = true;
+                    case "--threads" -> threads = Integer.parseInt(args[++i]);
+                    case "--source" -> source = new File(args[++i]);
+                    case "--destination" -> destination = new File(args[++i]);
+                    default -> {
+                        if (rulesFile != null || args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown argument: " + args[i]);
+                        }
+                        rulesFile = Paths.get(args[i]);
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.err.println("Missing value for " + args[args.length - 1]);
+            System.err.println(USAGE);
+            return 2;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+        if (rulesFile == null || threads < 1) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        File[] configured = readConfiguredFolders();
+        source = source != null ? source : configured[0];
+        destination = destination != null ? destination : configured[1];
+        if (source == null || !source.isDirectory() || destination == null || !destination.isDirectory()) {
+            System.err.println("The source folder or destination folder cannot be found: " + source + ", " + destination);
+            return 2;
+        }
+        List<Rule> rules;
+        try {
+            rules = parseRules(Files.readAllLines(rulesFile, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("Error reading rules file " + rulesFile + ": " + e.getMessage());
+            return 2;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return 2;
+        }
+        BatchSorter sorter = new BatchSorter(source.getAbsoluteFile(), destination.getAbsoluteFile(), rules, dryRun, threads);
+        return sorter.sort() ? 0 : 1;
+    }
+
+    static List<Rule> parseRules(List<String> lines) {
+        List<Rule> rules = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int arrow = line.lastIndexOf("->");
+            if (arrow < 0) {
+                throw new IllegalArgumentException("Rule on line " + (i + 1) + " has no '->': " + line);
+            }
+            String target = line.substring(arrow + 2).trim().replace('\\', '/');
+            if (target.isEmpty() || target.startsWith("/") || Arrays.asList(target.split("/")).contains("..")) {
+                throw new IllegalArgumentException("Rule on line " + (i + 1) + " needs a relative target folder: " + line);
+            }
+            Set<String> extensions = null;
+            Pattern namePattern = null;
+            boolean needsDate = target.contains("{yyyy}") || target.contains("{MM}") || target.contains("{dd}");
+            for (String condition : line.substring(0, arrow).trim().split("\\s+")) {
+                if (condition.startsWith("ext:")) {
+                    extensions = Set.of(condition.substring(4).toLowerCase(Locale.ROOT).split(","));
+                } else if (condition.startsWith("name:")) {
+                    try {
+                        namePattern = Pattern.compile(condition.substring(5));
+                    } catch (PatternSyntaxException e) {
+                        throw new IllegalArgumentException("Invalid name pattern on line " + (i + 1) + ": " + e.getDescription());
+                    }
+                } else if (condition.equals("exif-date")) {
+                    needsDate = true;
+                } else if (!condition.equals("*")) {
+                    throw new IllegalArgumentException("Unknown condition on line " + (i + 1) + ": " + condition);
+                }
+            }
+            rules.add(new Rule(i + 1, line, extensions, namePattern, needsDate, target));
+        }
+        if (rules.isEmpty()) {
+            throw new IllegalArgumentException("The rules file does not contain any rules.");
+        }
+        return rules;
+    }
+
+    public boolean sort() {
+        long start = System.nanoTime();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUED_FILES_PER_THREAD), new ThreadPoolExecutor.CallerRunsPolicy());
+        boolean listed = true;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(sourceFolder.toPath())) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.startsWith(".") && name.endsWith(MoveEngine.PART_SUFFIX)) {
+                    continue;
+                }
+                executor.execute(() -> {
+                    if (Files.isRegularFile(path)) {
+                        process(path.toFile());
+                    }
+                });
+            }
+        } catch (IOException | RuntimeException e) {
+            listed = false;
+            System.err.println("Error listing source folder " + sourceFolder + ": " + e.getMessage());
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        printSummary(System.nanoTime() - start);
+        return listed && failed.get() == 0;
+    }
+
+    private void process(File file) {
+        processed.incrementAndGet();
+        Candidate candidate = new Candidate(file);
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            if (rule.matches(candidate)) {
+                apply(file, rule.target().equals(BIN_TARGET) ? null : rule.resolve(candidate), i);
+                return;
+            }
+        }
+        unmatched.incrementAndGet();
+    }
+
+    private void apply(File file, String targetFolder, int ruleIndex) {
+        File target;
+        if (targetFolder == null) {
+            target = dryRun ? new File(recycleBin.getFolder(), file.getName()) : recycleBin.targetFor(file);
+        } else {
+            target = new File(new File(destinationFolder, targetFolder), file.getName());
+        }
+        if (target == null) {
+            failed.incrementAndGet();
+            return;
+        }
+        if (target.exists()) {
+            conflicts.incrementAndGet();
+            System.out.println("Skipped " + file.getName() + ": " + target.getAbsolutePath() + " already exists");
+            return;
+        }
+        ruleCounts.incrementAndGet(ruleIndex);
+        if (dryRun) {
+            System.out.println("Would move " + file.getName() + " -> " + target.getAbsolutePath());
+            return;
+        }
+        try {
+            Files.createDirectories(target.toPath().getParent());
+            MoveEngine.MoveResult result = moveEngine.move(file.toPath(), target.toPath());
+            bytesMoved.addAndGet(result.bytes());
+        } catch (IOException | RuntimeException e) {
+            ruleCounts.decrementAndGet(ruleIndex);
+            failed.incrementAndGet();
+            System.err.println("Error moving file " + file.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    private void printSummary(long nanos) {
+        System.out.println(dryRun ? "Dry run, nothing was moved." : "Batch sort finished.");
+        for (int i = 0; i < rules.size(); i++) {
+            System.out.println("  line " + rules.get(i).line() + " [" + rules.get(i).text() + "]: " + ruleCounts.get(i) + " files");
+        }
+        System.out.println("  unmatched, left for interactive sorting: " + unmatched.get());
+        System.out.println("  skipped because the target already exists: " + conflicts.get());
+        System.out.println("  failed: " + failed.get());
+        double seconds = nanos / 1_000_000_000.0;
+        System.out.printf(Locale.ROOT, "Processed %d files in %.2f s (%.1f files/sec) with %d threads, %d bytes moved%n",
+                processed.get(), seconds, seconds > 0 ? processed.get() / seconds : 0, threads, bytesMoved.get());
+    }
+
+    private static File[] readConfiguredFolders() {
+        File[] folders = new File[2];
+        Path configFile = PhotoSorterSwing.defaultConfigFilePath();
+        if (!Files.exists(configFile)) {
+            return folders;
+        }
+        try {
+            for (String line : Files.readAllLines(configFile)) {
+                if (line.startsWith("FROM:")) {
+                    folders[0] = new File(line.substring(5).trim());
+                } else if (line.startsWith("TO:")) {
+                    folders[1] = new File(line.substring(3).trim());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading configuration file: " + e.getMessage());
+        }
+        return folders;
+    }
+}
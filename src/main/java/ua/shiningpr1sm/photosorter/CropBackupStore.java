@@ -0,0 +1,321 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+public class CropBackupStore {
+    public static final String DIRECTORY_NAME = ".photosorter-crops";
+    private static final String INDEX_NAME = "index.dat";
+    private static final String LEGACY_SUFFIX = ".bak";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x50534342;
+    private static final int VERSION = 1;
+    private static final long DEFAULT_MAX_BYTES = 2L * 1024 * 1024 * 1024;
+
+    private final File sourceFolder;
+    private final Path directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private long totalBytes;
+    private long nextId = 1;
+
+    private record Entry(String backupName, long size, long created, boolean inFlight) {
+    }
+
+    private CropBackupStore(File sourceFolder, long maxBytes) {
+        this.sourceFolder = sourceFolder;
+        this.directory = sourceFolder.toPath().resolve(DIRECTORY_NAME);
+        this.maxBytes = maxBytes;
+    }
+
+    public static CropBackupStore open(File sourceFolder) {
+        CropBackupStore store = new CropBackupStore(sourceFolder, Long.getLong("photosorter.cropBackupBytes", DEFAULT_MAX_BYTES));
+        try {
+            store.load();
+            store.adoptLegacyBackups();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not load crop backups for " + sourceFolder.getAbsolutePath() + ": " + e.getMessage());
+        }
+        return store;
+    }
+
+    public synchronized boolean hasBackup(File file) {
+        return entries.containsKey(file.getName());
+    }
+
+    public synchronized Path backupPath(File file) {
+        Entry entry = entries.get(file.getName());
+        return entry != null ? directory.resolve(entry.backupName()) : null;
+    }
+
+    public synchronized Path preserve(File file) throws IOException {
+        if (entries.containsKey(file.getName())) {
+            return file.toPath();
+        }
+        Files.createDirectories(directory);
+        markHidden();
+        String backupName = nextId++ + "-" + file.getName();
+        Path backup = directory.resolve(backupName);
+        Path original = file.toPath();
+        long size = Files.size(original);
+        entries.put(file.getName(), new Entry(backupName, size, System.currentTimeMillis(), true));
+        totalBytes += size;
+        try {
+            save();
+        } catch (IOException e) {
+            remove(file.getName());
+            throw e;
+        }
+        try {
+            try {
+                Files.createLink(backup, original);
+                return original;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                Files.move(original, backup, StandardCopyOption.ATOMIC_MOVE);
+                return backup;
+            }
+        } catch (IOException | RuntimeException e) {
+            remove(file.getName());
+            trySave();
+            throw e;
+        } finally {
+            if (evict()) {
+                trySave();
+            }
+        }
+    }
+
+    public synchronized void commit(File file) {
+        Entry entry = entries.get(file.getName());
+        if (entry != null && entry.inFlight()) {
+            entries.put(file.getName(), new Entry(entry.backupName(), entry.size(), entry.created(), false));
+            trySave();
+        }
+    }
+
+    public synchronized boolean restore(File file) throws IOException {
+        Entry entry = entries.get(file.getName());
+        if (entry == null) {
+            return false;
+        }
+        Path backup = directory.resolve(entry.backupName());
+        if (Files.exists(backup)) {
+            Files.move(backup, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(backup);
+        }
+        remove(file.getName());
+        trySave();
+        return true;
+    }
+
+    public synchronized void discard(Path backup) {
+        if (backup == null) {
+            return;
+        }
+        for (Map.Entry<String, Entry> item : entries.entrySet()) {
+            if (directory.resolve(item.getValue().backupName()).toAbsolutePath().equals(backup.toAbsolutePath())) {
+                deleteBackup(item.getKey());
+                trySave();
+                return;
+            }
+        }
+    }
+
+    public synchronized int removeUnreferenced(Predicate<String> referenced) {
+        List<String> orphans = new ArrayList<>();
+        for (String name : entries.keySet()) {
+            if (!new File(sourceFolder, name).exists() && !referenced.test(name)) {
+                orphans.add(name);
+            }
+        }
+        for (String name : orphans) {
+            deleteBackup(name);
+        }
+        if (!orphans.isEmpty()) {
+            trySave();
+        }
+        return orphans.size();
+    }
+
+    private boolean evict() {
+        boolean evicted = false;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            if (eldest.getValue().inFlight()) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(directory.resolve(eldest.getValue().backupName()));
+            } catch (IOException e) {
+                System.err.println("Could not evict crop backup " + eldest.getValue().backupName() + ": " + e.getMessage());
+                continue;
+            }
+            totalBytes -= eldest.getValue().size();
+            iterator.remove();
+            evicted = true;
+            System.err.println("Evicted crop backup of " + eldest.getKey() + " to stay under " + maxBytes / (1024 * 1024) + " MB; that crop can no longer be undone");
+        }
+        return evicted;
+    }
+
+    private void deleteBackup(String name) {
+        Entry entry = entries.get(name);
+        try {
+            Files.deleteIfExists(directory.resolve(entry.backupName()));
+            remove(name);
+        } catch (IOException e) {
+            System.err.println("Could not delete crop backup " + entry.backupName() + ": " + e.getMessage());
+        }
+    }
+
+    private void remove(String name) {
+        Entry entry = entries.remove(name);
+        if (entry != null) {
+            totalBytes -= entry.size();
+        }
+    }
+
+    private void markHidden() {
+        try {
+            Files.setAttribute(directory, "dos:hidden", true);
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            // Dot-prefixed names are already hidden outside Windows.
+        }
+    }
+
+    private synchronized void load() throws IOException {
+        Path index = directory.resolve(INDEX_NAME);
+        if (Files.isRegularFile(index)) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+                if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                    throw new IOException("Unrecognised crop backup index " + index);
+                }
+                nextId = input.readLong();
+                int count = input.readInt();
+                for (int i = 0; i < count; i++) {
+                    String name = input.readUTF();
+                    Entry entry = new Entry(input.readUTF(), input.readLong(), input.readLong(), input.readBoolean());
+                    Path backup = directory.resolve(entry.backupName());
+                    if (!Files.isRegularFile(backup)) {
+                        continue;
+                    }
+                    if (entry.inFlight()) {
+                        Path original = sourceFolder.toPath().resolve(name);
+                        if (!Files.exists(original)) {
+                            Files.move(backup, original, StandardCopyOption.ATOMIC_MOVE);
+                            System.err.println("Restored " + name + " from an interrupted crop");
+                            continue;
+                        }
+                        entry = new Entry(entry.backupName(), entry.size(), entry.created(), false);
+                    }
+                    entries.put(name, entry);
+                    totalBytes += entry.size();
+                }
+            }
+        }
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Set<String> known = new HashSet<>();
+        for (Entry entry : entries.values()) {
+            known.add(entry.backupName());
+        }
+        int unknown = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                nextId = Math.max(nextId, backupId(fileName) + 1);
+                if (!fileName.equals(INDEX_NAME) && !known.contains(fileName)) {
+                    unknown++;
+                }
+            }
+        }
+        if (unknown > 0) {
+            System.err.println("Kept " + unknown + " crop backups in " + directory + " that are missing from its index");
+        }
+    }
+
+    private static long backupId(String fileName) {
+        int dash = fileName.indexOf('-');
+        try {
+            return dash > 0 ? Long.parseLong(fileName.substring(0, dash)) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private synchronized void adoptLegacyBackups() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(sourceFolder.toPath(), "*" + LEGACY_SUFFIX)) {
+            for (Path legacy : stream) {
+                String fileName = legacy.getFileName().toString();
+                String name = fileName.substring(0, fileName.length() - LEGACY_SUFFIX.length());
+                if (entries.containsKey(name) || !Files.isRegularFile(legacy)) {
+                    continue;
+                }
+                Files.createDirectories(directory);
+                markHidden();
+                String backupName = nextId++ + "-" + name;
+                long size = Files.size(legacy);
+                entries.put(name, new Entry(backupName, size, System.currentTimeMillis(), false));
+                totalBytes += size;
+                try {
+                    save();
+                } catch (IOException e) {
+                    remove(name);
+                    throw e;
+                }
+                Files.move(legacy, directory.resolve(backupName), StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+    }
+
+    private void save() throws IOException {
+        Path index = directory.resolve(INDEX_NAME);
+        Path temp = directory.resolve(INDEX_NAME + TEMP_SUFFIX);
+        Files.createDirectories(directory);
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(nextId);
+            output.writeInt(entries.size());
+            for (Map.Entry<String, Entry> item : entries.entrySet()) {
+                output.writeUTF(item.getKey());
+                output.writeUTF(item.getValue().backupName());
+                output.writeLong(item.getValue().size());
+                output.writeLong(item.getValue().created());
+                output.writeBoolean(item.getValue().inFlight());
+            }
+        }
+        Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void trySave() {
+        try {
+            save();
+        } catch (IOException e) {
+            System.err.println("Could not save crop backup index " + directory.resolve(INDEX_NAME) + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package ua.shiningpr1sm.photosorter;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+public class DecodingTileSource implements TileSource {
+    private static final long TILE_CACHE_BYTES = 64L * 1024 * 1024;
+    private static final int MAX_BATCH_TILES = 64;
+    private static final int MAX_PENDING_TILES = 256;
+
+    private final File file;
+    private final int orientation;
+    private final int storedWidth;
+    private final int storedHeight;
+    private final int levelCount;
+    private final ImageCache<TileKey> cache = new ImageCache<>(TILE_CACHE_BYTES);
+    private final LinkedHashSet<TileKey> requested = new LinkedHashSet<>();
+    private final Thread decoder;
+    private volatile Runnable listener = () -> {
+    };
+    private volatile boolean closed;
+    private volatile boolean failed;
+
+    private record TileKey(int level, int column, int row) {
+    }
+
+    private DecodingTileSource(File file, int orientation, int storedWidth, int storedHeight) {
+        this.file = file;
+        this.orientation = orientation;
+        this.storedWidth = storedWidth;
+        this.storedHeight = storedHeight;
+        int levels = 1;
+        while (levelSize(storedWidth, levels - 1) > TILE_SIZE || levelSize(storedHeight, levels - 1) > TILE_SIZE) {
+            levels++;
+        }
+        this.levelCount = levels;
+        this.decoder = new Thread(this::decodeLoop, "tile-decoder");
+        decoder.setDaemon(true);
+    }
+
+    public static DecodingTileSource open(File file) throws IOException {
+        ImageMetadataReader.Metadata metadata = ImageMetadataReader.read(file);
+        int orientation = metadata != null ? metadata.orientation() : 1;
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            ImageReader reader = openReader(file, input);
+            try {
+                DecodingTileSource source = new DecodingTileSource(file, orientation, reader.getWidth(0), reader.getHeight(0));
+                source.decoder.start();
+                return source;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return getLevelWidth(0);
+    }
+
+    @Override
+    public int getHeight() {
+        return getLevelHeight(0);
+    }
+
+    @Override
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    @Override
+    public int getLevelWidth(int level) {
+        return levelSize(ImageScaler.swapsAxes(orientation) ? storedHeight : storedWidth, level);
+    }
+
+    @Override
+    public int getLevelHeight(int level) {
+        return levelSize(ImageScaler.swapsAxes(orientation) ? storedWidth : storedHeight, level);
+    }
+
+    @Override
+    public BufferedImage getTile(int level, int column, int row) {
+        TileKey key = new TileKey(level, column, row);
+        BufferedImage tile = cache.get(key);
+        if (tile == null && !failed && isInside(key)) {
+            synchronized (this) {
+                requested.remove(key);
+                requested.add(key);
+                Iterator<TileKey> eldest = requested.iterator();
+                while (requested.size() > MAX_PENDING_TILES) {
+                    eldest.next();
+                    eldest.remove();
+                }
+                notifyAll();
+            }
+        }
+        return tile;
+    }
+
+    @Override
+    public BufferedImage peekTile(int level, int column, int row) {
+        return cache.get(new TileKey(level, column, row));
+    }
+
+    @Override
+    public void setTileListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        decoder.interrupt();
+        cache.clear();
+    }
+
+    private boolean isInside(TileKey key) {
+        return key.level() >= 0 && key.level() < levelCount && key.column() >= 0 && key.row() >= 0
+                && key.column() * TILE_SIZE < getLevelWidth(key.level()) && key.row() * TILE_SIZE < getLevelHeight(key.level());
+    }
+
+    private void decodeLoop() {
+        while (!closed) {
+            int level;
+            Rectangle box;
+            synchronized (this) {
+                try {
+                    while (requested.isEmpty() && !closed) {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (closed) {
+                    return;
+                }
+                TileKey newest = null;
+                for (TileKey key : requested) {
+                    newest = key;
+                }
+                level = newest.level();
+                box = nextBatch(newest);
+            }
+            try {
+                decode(level, box);
+            } catch (IOException | RuntimeException e) {
+                if (closed) {
+                    return;
+                }
+                failed = true;
+                synchronized (this) {
+                    requested.clear();
+                }
+                System.err.println("Could not decode tiles of " + file.getAbsolutePath() + ": " + e.getMessage());
+            }
+            listener.run();
+        }
+    }
+
+    private Rectangle nextBatch(TileKey newest) {
+        List<TileKey> sameLevel = new ArrayList<>();
+        for (TileKey key : requested) {
+            if (key.level() == newest.level()) {
+                sameLevel.add(key);
+            }
+        }
+        sameLevel.sort(Comparator.comparingInt(key -> Math.max(Math.abs(key.column() - newest.column()), Math.abs(key.row() - newest.row()))));
+        Rectangle box = new Rectangle(newest.column(), newest.row(), 1, 1);
+        for (TileKey key : sameLevel) {
+            Rectangle grown = box.union(new Rectangle(key.column(), key.row(), 1, 1));
+            if (grown.width * grown.height <= MAX_BATCH_TILES) {
+                box = grown;
+            }
+        }
+        Rectangle batch = box;
+        requested.removeIf(key -> key.level() == newest.level() && batch.contains(key.column(), key.row()));
+        return batch;
+    }
+
+    private void decode(int level, Rectangle box) throws IOException {
+        int levelWidth = getLevelWidth(level);
+        int levelHeight = getLevelHeight(level);
+        int storedLevelWidth = levelSize(storedWidth, level);
+        int storedLevelHeight = levelSize(storedHeight, level);
+        int factor = 1 << level;
+        Rectangle displayed = new Rectangle(box.x * TILE_SIZE, box.y * TILE_SIZE,
+                Math.min(levelWidth, (box.x + box.width) * TILE_SIZE) - box.x * TILE_SIZE,
+                Math.min(levelHeight, (box.y + box.height) * TILE_SIZE) - box.y * TILE_SIZE);
+        Rectangle stored = ImageScaler.toStoredRegion(displayed, orientation, storedLevelWidth, storedLevelHeight);
+        BufferedImage band;
+        long start = System.nanoTime();
+        boolean decoded = false;
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            ImageReader reader = openReader(file, input);
+            try {
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle(stored.x * factor, stored.y * factor,
+                        Math.min(storedWidth - stored.x * factor, stored.width * factor),
+                        Math.min(storedHeight - stored.y * factor, stored.height * factor)));
+                param.setSourceSubsampling(factor, factor, 0, 0);
+                band = reader.read(0, param);
+                decoded = true;
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            Metrics.record(Metrics.Stage.DECODE, start, decoded);
+        }
+        for (int row = box.y; row < box.y + box.height; row++) {
+            for (int column = box.x; column < box.x + box.width; column++) {
+                if (closed) {
+                    return;
+                }
+                Rectangle tileArea = new Rectangle(column * TILE_SIZE, row * TILE_SIZE,
+                        Math.min(TILE_SIZE, levelWidth - column * TILE_SIZE), Math.min(TILE_SIZE, levelHeight - row * TILE_SIZE));
+                Rectangle storedTile = ImageScaler.toStoredRegion(tileArea, orientation, storedLevelWidth, storedLevelHeight);
+                storedTile.translate(-stored.x, -stored.y);
+                storedTile = storedTile.intersection(new Rectangle(0, 0, band.getWidth(), band.getHeight()));
+                if (storedTile.isEmpty()) {
+                    continue;
+                }
+                cache.put(new TileKey(level, column, row), orient(band.getSubimage(storedTile.x, storedTile.y, storedTile.width, storedTile.height)));
+            }
+        }
+    }
+
+    private BufferedImage orient(BufferedImage part) {
+        boolean swapsAxes = ImageScaler.swapsAxes(orientation);
+        int width = swapsAxes ? part.getHeight() : part.getWidth();
+        int height = swapsAxes ? part.getWidth() : part.getHeight();
+        BufferedImage tile = ImageScaler.createCompatibleImage(width, height, part.getColorModel().hasAlpha());
+        Graphics2D g2d = tile.createGraphics();
+        try {
+            g2d.transform(ImageScaler.orientationTransform(orientation, width, height));
+            g2d.drawImage(part, 0, 0, null);
+        } finally {
+            g2d.dispose();
+        }
+        return tile;
+    }
+
+    private static ImageReader openReader(File file, ImageInputStream input) throws IOException {
+        if (input == null) {
+            throw new IOException("Could not open image file: " + file.getAbsolutePath());
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            throw new IOException("Could not read image file: " + file.getAbsolutePath());
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, true, true);
+        return reader;
+    }
+
+    private static int levelSize(int size, int level) {
+        return Math.max(1, (size + (1 << level) - 1) >> level);
+    }
+}
@@ -0,0 +1,424 @@
+package ua.shiningpr1sm.photosorter;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+public class DuplicateDetector {
+    private static final int NEAR_DUPLICATE_DISTANCE = 6;
+    private static final int HASH_DECODE_SIZE = 64;
+    private static final int SPLIT_THRESHOLD = 16;
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png");
+
+    private final ForkJoinPool pool;
+    private final Runnable onUpdate;
+    private final Map<File, Match> matches = new ConcurrentHashMap<>();
+    private volatile boolean cancelled;
+    private volatile boolean complete;
+
+    public record Match(File original, boolean exact, int distance) {
+    }
+
+    public DuplicateDetector(int parallelism, Runnable onUpdate) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.onUpdate = onUpdate;
+    }
+
+    public void start(List<File> sourceFiles, File destinationRoot, FolderIndex sourceIndex, Path configDirectory) {
+        List<File> sources = List.copyOf(sourceFiles);
+        Thread detector = new Thread(() -> {
+            try {
+                detect(sources, destinationRoot, sourceIndex, ImageHashCache.open(configDirectory, destinationRoot));
+            } catch (RuntimeException e) {
+                if (!cancelled) {
+                    System.err.println("Duplicate detection failed: " + e.getMessage());
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }, "duplicate-detector");
+        detector.setDaemon(true);
+        detector.start();
+    }
+
+    public Match duplicateOf(File file) {
+        return matches.get(file.getAbsoluteFile());
+    }
+
+    public List<File> exactDuplicates() {
+        List<File> result = new ArrayList<>();
+        matches.forEach((file, match) -> {
+            if (match.exact()) {
+                result.add(file);
+            }
+        });
+        result.sort(null);
+        return result;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void forget(File file) {
+        matches.remove(file.getAbsoluteFile());
+    }
+
+    public void cancel() {
+        cancelled = true;
+        pool.shutdownNow();
+    }
+
+    public static long differenceHash(BufferedImage image) {
+        BufferedImage small = ImageScaler.scale(image, 9, 8, ImageScaler.Quality.BALANCED);
+        BufferedImage gray = new BufferedImage(9, 8, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g2d = gray.createGraphics();
+        g2d.drawImage(small, 0, 0, null);
+        g2d.dispose();
+        Raster raster = gray.getRaster();
+        long hash = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                hash = (hash << 1) | (raster.getSample(x, y, 0) < raster.getSample(x + 1, y, 0) ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    private void detect(List<File> sources, File destinationRoot, FolderIndex sourceIndex, ImageHashCache destinationHashes) {
+        List<File> all = new ArrayList<>(sources.size());
+        for (File source : sources) {
+            all.add(source.getAbsoluteFile());
+        }
+        int sourceCount = all.size();
+        Set<File> sourceSet = new HashSet<>(all);
+        Set<String> destinationPaths = new HashSet<>();
+        for (File file : listDestination(destinationRoot.toPath())) {
+            destinationPaths.add(file.getPath());
+            if (!sourceSet.contains(file)) {
+                all.add(file);
+            }
+        }
+        if (cancelled) {
+            return;
+        }
+        destinationHashes.retainOnly(destinationPaths);
+        File[] files = all.toArray(new File[0]);
+        int count = files.length;
+
+        long[] sizes = new long[count];
+        forEach(count, i -> sizes[i] = files[i].length());
+        Map<Long, Integer> sizeCounts = new HashMap<>();
+        Set<Long> sourceSizes = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            sizeCounts.merge(sizes[i], 1, Integer::sum);
+            if (i < sourceCount) {
+                sourceSizes.add(sizes[i]);
+            }
+        }
+        int[] candidates = new int[count];
+        int candidateCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (sizes[i] > 0 && sizeCounts.get(sizes[i]) > 1 && sourceSizes.contains(sizes[i])) {
+                candidates[candidateCount++] = i;
+            }
+        }
+
+        byte[][] hashes = new byte[count][];
+        int[] hashed = Arrays.copyOf(candidates, candidateCount);
+        forEach(hashed.length, k -> hashes[hashed[k]] = contentHash(files[hashed[k]], hashed[k] < sourceCount ? sourceIndex : null));
+        if (cancelled) {
+            return;
+        }
+        groupExactDuplicates(files, sourceCount, hashed, hashes);
+        SwingUtilities.invokeLater(onUpdate);
+
+        findNearDuplicates(files, sizes, sourceCount, destinationHashes);
+        destinationHashes.save();
+        complete = true;
+        if (!cancelled) {
+            SwingUtilities.invokeLater(onUpdate);
+        }
+    }
+
+    private void groupExactDuplicates(File[] files, int sourceCount, int[] hashed, byte[][] hashes) {
+        Map<Long, List<Integer>> groups = new HashMap<>();
+        for (int i : hashed) {
+            if (hashes[i] != null) {
+                groups.computeIfAbsent(prefix(hashes[i]), key -> new ArrayList<>()).add(i);
+            }
+        }
+        for (List<Integer> group : groups.values()) {
+            while (group.size() > 1) {
+                byte[] hash = hashes[group.get(0)];
+                List<Integer> same = new ArrayList<>();
+                List<Integer> rest = new ArrayList<>();
+                for (int i : group) {
+                    (Arrays.equals(hashes[i], hash) ? same : rest).add(i);
+                }
+                int original = same.get(0);
+                for (int i : same) {
+                    if (i >= sourceCount) {
+                        original = i;
+                        break;
+                    }
+                }
+                for (int i : same) {
+                    if (i != original && i < sourceCount) {
+                        matches.put(files[i], new Match(files[original], true, 0));
+                    }
+                }
+                group = rest;
+            }
+        }
+    }
+
+    private void findNearDuplicates(File[] files, long[] sizes, int sourceCount, ImageHashCache destinationHashes) {
+        int[] images = new int[files.length];
+        int imageCount = 0;
+        for (int i = 0; i < files.length; i++) {
+            if (isImage(files[i]) && (i >= sourceCount || !matches.containsKey(files[i]))) {
+                images[imageCount++] = i;
+            }
+        }
+        int[] imageIndex = Arrays.copyOf(images, imageCount);
+        long[] imageHash = new long[imageCount];
+        boolean[] valid = new boolean[imageCount];
+        forEach(imageCount, k -> {
+            int file = imageIndex[k];
+            Long hash = file < sourceCount ? imageHash(files[file]) : destinationHash(files[file], sizes[file], destinationHashes);
+            if (hash != null) {
+                imageHash[k] = hash;
+                valid[k] = true;
+            }
+        });
+        if (cancelled) {
+            return;
+        }
+        HashBands bands = new HashBands(imageHash, valid);
+        forEach(imageCount, k -> {
+            int file = imageIndex[k];
+            if (!valid[k] || file >= sourceCount) {
+                return;
+            }
+            int best = bands.nearest(imageHash[k], NEAR_DUPLICATE_DISTANCE, other -> {
+                int otherFile = imageIndex[other];
+                return otherFile != file && (otherFile >= sourceCount || otherFile < file);
+            });
+            if (best >= 0) {
+                int distance = Long.bitCount(imageHash[k] ^ imageHash[best]);
+                matches.putIfAbsent(files[file], new Match(files[imageIndex[best]], false, distance));
+            }
+        });
+    }
+
+    // Multi-index lookup over four 16-bit bands: two hashes at most six bits apart differ in at most one bit of
+    // some band, so probing each band's key and its sixteen one-bit neighbours finds every candidate.
+    private static class HashBands {
+        private static final int BANDS = 4;
+        private static final int BAND_BITS = 16;
+        private static final int KEYS = 1 << BAND_BITS;
+
+        private final long[] hashes;
+        private final int[][] starts = new int[BANDS][];
+        private final int[][] members = new int[BANDS][];
+
+        HashBands(long[] hashes, boolean[] valid) {
+            this.hashes = hashes;
+            for (int band = 0; band < BANDS; band++) {
+                int[] start = new int[KEYS + 1];
+                for (int i = 0; i < hashes.length; i++) {
+                    if (valid[i]) {
+                        start[key(hashes[i], band) + 1]++;
+                    }
+                }
+                for (int key = 0; key < KEYS; key++) {
+                    start[key + 1] += start[key];
+                }
+                int[] next = Arrays.copyOf(start, KEYS);
+                int[] member = new int[start[KEYS]];
+                for (int i = 0; i < hashes.length; i++) {
+                    if (valid[i]) {
+                        member[next[key(hashes[i], band)]++] = i;
+                    }
+                }
+                starts[band] = start;
+                members[band] = member;
+            }
+        }
+
+        int nearest(long hash, int maxDistance, IntPredicate accept) {
+            int best = -1;
+            int bestDistance = maxDistance + 1;
+            for (int band = 0; band < BANDS; band++) {
+                int key = key(hash, band);
+                for (int flip = -1; flip < BAND_BITS; flip++) {
+                    int probe = flip < 0 ? key : key ^ (1 << flip);
+                    for (int m = starts[band][probe]; m < starts[band][probe + 1]; m++) {
+                        int candidate = members[band][m];
+                        int distance = Long.bitCount(hash ^ hashes[candidate]);
+                        if ((distance < bestDistance || (distance == bestDistance && candidate < best)) && accept.test(candidate)) {
+                            best = candidate;
+                            bestDistance = distance;
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+
+        private static int key(long hash, int band) {
+            return (int) (hash >>> (band * BAND_BITS)) & (KEYS - 1);
+        }
+    }
+
+    private void forEach(int count, IntConsumer action) {
+        if (!cancelled && count > 0) {
+            pool.invoke(new RangeTask(0, count, action));
+        }
+    }
+
+    private class RangeTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        RangeTask(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled) {
+                return;
+            }
+            if (to - from <= SPLIT_THRESHOLD) {
+                for (int i = from; i < to && !cancelled; i++) {
+                    action.accept(i);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, middle, action), new RangeTask(middle, to, action));
+        }
+    }
+
+    private static byte[] contentHash(File file, FolderIndex index) {
+        if (index != null) {
+            FolderIndex.Entry entry = index.lookup(file);
+            if (entry != null && entry.contentHash() != null) {
+                return entry.contentHash();
+            }
+        }
+        try {
+            byte[] hash = ContentHasher.hash(file.toPath());
+            if (index != null) {
+                FolderIndex.Entry entry = index.lookup(file);
+                if (entry != null) {
+                    index.put(file, entry.withContentHash(hash));
+                }
+            }
+            return hash;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Long destinationHash(File file, long size, ImageHashCache cache) {
+        long modified = file.lastModified();
+        Long hash = cache.lookup(file, size, modified);
+        if (hash == null) {
+            hash = imageHash(file);
+            if (hash != null) {
+                cache.put(file, size, modified, hash);
+            }
+        }
+        return hash;
+    }
+
+    private static Long imageHash(File file) {
+        try {
+            BufferedImage image = EmbeddedThumbnailReader.read(file);
+            if (image == null) {
+                PreviewDecoder.Result result = PreviewDecoder.decode(file, HASH_DECODE_SIZE, HASH_DECODE_SIZE);
+                image = result != null ? result.image() : null;
+            }
+            return image != null ? differenceHash(image) : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static long prefix(byte[] hash) {
+        long value = 0;
+        for (int i = 0; i < Math.min(8, hash.length); i++) {
+            value = (value << 8) | (hash[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static boolean isImage(File file) {
+        String name = file.getName();
+        int lastDot = name.lastIndexOf('.');
+        return lastDot >= 0 && IMAGE_EXTENSIONS.contains(name.substring(lastDot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private List<File> listDestination(Path root) {
+        List<File> result = new ArrayList<>();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (cancelled) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    Path name = dir.getFileName();
+                    if (!dir.equals(root) && name != null && FolderTree.isHiddenFolder(name.toString())) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    Path name = file.getFileName();
+                    if (attrs.isRegularFile() && name != null && SourceFileQueue.isSupported(name.toString())) {
+                        result.add(file.toFile().getAbsoluteFile());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Error listing destination folder " + root + ": " + e.getMessage());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,106 @@
+package ua.shiningpr1sm.photosorter;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+public final class EmbeddedThumbnailReader {
+    static final int HEADER_BYTES = 64 * 1024;
+    private static final int MAX_PREVIEW_BYTES = 512 * 1024;
+    private static final int TAG_THUMBNAIL_OFFSET = 0x0201;
+    private static final int TAG_THUMBNAIL_LENGTH = 0x0202;
+    private static final int TAG_MP_ENTRY = 0xB002;
+
+    private EmbeddedThumbnailReader() {
+    }
+
+    public static BufferedImage read(File file) {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            byte[] header = new byte[(int) Math.min(HEADER_BYTES, input.length())];
+            input.readFully(header);
+            long[] location = locate(header, header.length);
+            if (location == null) {
+                return null;
+            }
+            byte[] jpeg;
+            long offset = location[0];
+            int length = (int) location[1];
+            if (offset + length <= header.length) {
+                jpeg = Arrays.copyOfRange(header, (int) offset, (int) offset + length);
+            } else if (offset + length <= input.length()) {
+                jpeg = new byte[length];
+                input.seek(offset);
+                input.readFully(jpeg);
+            } else {
+                return null;
+            }
+            return ImageIO.read(new ByteArrayInputStream(jpeg));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    static long[] locate(byte[] header, int length) {
+        long[][] found = new long[2][];
+        JpegSegments.walk(header, length, (marker, dataOffset, dataLength) -> {
+            if (marker == JpegSegments.APP1 && found[0] == null && JpegSegments.startsWith(header, dataOffset, dataLength, "Exif\0\0")) {
+                found[0] = exifThumbnail(header, dataOffset + 6, dataOffset + dataLength);
+            } else if (marker == JpegSegments.APP2 && found[1] == null && JpegSegments.startsWith(header, dataOffset, dataLength, "MPF\0")) {
+                found[1] = mpfPreview(header, dataOffset + 4, dataOffset + dataLength);
+            }
+            return found[0] == null;
+        });
+        return found[0] != null ? found[0] : found[1];
+    }
+
+    private static long[] exifThumbnail(byte[] header, int tiffStart, int tiffEnd) {
+        TiffReader tiff = TiffReader.open(header, tiffStart, tiffEnd);
+        if (tiff == null) {
+            return null;
+        }
+        int ifd1 = tiff.nextIfdOffset(tiff.firstIfdOffset());
+        if (ifd1 <= 0) {
+            return null;
+        }
+        int[] values = {-1, -1};
+        tiff.forEachEntry(ifd1, entry -> {
+            if (entry.tag() == TAG_THUMBNAIL_OFFSET) {
+                values[0] = tiff.intValue(entry);
+            } else if (entry.tag() == TAG_THUMBNAIL_LENGTH) {
+                values[1] = tiff.intValue(entry);
+            }
+        });
+        if (values[0] <= 0 || values[1] <= 0 || values[1] > MAX_PREVIEW_BYTES) {
+            return null;
+        }
+        return new long[]{(long) tiffStart + values[0], values[1]};
+    }
+
+    private static long[] mpfPreview(byte[] header, int tiffStart, int tiffEnd) {
+        TiffReader tiff = TiffReader.open(header, tiffStart, tiffEnd);
+        if (tiff == null) {
+            return null;
+        }
+        long[][] preview = new long[1][];
+        tiff.forEachEntry(tiff.firstIfdOffset(), entry -> {
+            if (entry.tag() != TAG_MP_ENTRY || preview[0] != null) {
+                return;
+            }
+            int entries = entry.count() / 16;
+            for (int i = 1; i < entries; i++) {
+                int position = entry.valueOffset() + i * 16;
+                int size = tiff.u32(position + 4);
+                int offset = tiff.u32(position + 8);
+                if (size > 0 && size <= MAX_PREVIEW_BYTES && offset > 0) {
+                    preview[0] = new long[]{(long) tiffStart + offset, size};
+                    return;
+                }
+            }
+        });
+        return preview[0];
+    }
+}
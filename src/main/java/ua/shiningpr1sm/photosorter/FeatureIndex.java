@@ -0,0 +1,362 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FeatureIndex {
+    private static final int MAGIC = 0x50534649;
+    private static final int VERSION = 1;
+    private static final int BINS = ImageFeatures.HISTOGRAM_BINS;
+    private static final long LANE_HIGH_BITS = 0x8080808080808080L;
+    private static final long EVEN_LANES = 0x00FF00FF00FF00FFL;
+    private static final long WORD_SUM = 0x0001000100010001L;
+    private static final int NEIGHBOURS = 24;
+    private static final float HASH_WEIGHT = 0.35f;
+    private static final float HISTOGRAM_WEIGHT = 0.25f;
+    private static final float DATE_WEIGHT = 0.3f;
+    private static final float CAMERA_WEIGHT = 0.1f;
+    private static final int DATE_OCTAVES = 17;
+    private static final float VOTE_SMOOTHING = 0.05f;
+    private static final float[] DATE_TERMS = new float[33];
+
+    static {
+        for (int octave = 0; octave < DATE_TERMS.length; octave++) {
+            DATE_TERMS[octave] = DATE_WEIGHT * Math.min(1f, (float) octave / DATE_OCTAVES);
+        }
+    }
+
+    private final List<File> folders = new ArrayList<>();
+    private final Map<File, Integer> folderIds = new HashMap<>();
+    private int count;
+    private int live;
+    private int sweep;
+    private int[] folderOf = new int[1024];
+    private String[] names = new String[1024];
+    private long[] sizes = new long[1024];
+    private long[] lastModified = new long[1024];
+    private int[] sweeps = new int[1024];
+    private long[] hashes = new long[1024];
+    private int[] hours = new int[1024];
+    private int[] cameras = new int[1024];
+    private long[] histograms = new long[1024 * 2];
+    private int[] table = new int[2048];
+
+    public synchronized int size() {
+        return live;
+    }
+
+    public synchronized void put(File file, long size, long modified, ImageFeatures features) {
+        int folder = folderId(file.getAbsoluteFile().getParentFile());
+        String name = file.getName();
+        int slot = find(folder, name);
+        if (slot < 0) {
+            slot = append(folder, name);
+        } else if (sizes[slot] < 0) {
+            live++;
+        }
+        sizes[slot] = size;
+        lastModified[slot] = modified;
+        sweeps[slot] = sweep;
+        hashes[slot] = features.hash();
+        hours[slot] = features.captureHour();
+        cameras[slot] = features.camera();
+        histograms[slot * 2] = pack(features.histogram(), 0);
+        histograms[slot * 2 + 1] = pack(features.histogram(), BINS / 2);
+    }
+
+    public synchronized boolean remove(File file) {
+        Integer folder = folderIds.get(file.getAbsoluteFile().getParentFile());
+        int slot = folder != null ? find(folder, file.getName()) : -1;
+        if (slot < 0 || sizes[slot] < 0) {
+            return false;
+        }
+        sizes[slot] = -1;
+        live--;
+        return true;
+    }
+
+    public synchronized boolean touch(File file, long size, long modified) {
+        Integer folder = folderIds.get(file.getAbsoluteFile().getParentFile());
+        int slot = folder != null ? find(folder, file.getName()) : -1;
+        if (slot < 0 || sizes[slot] != size || lastModified[slot] != modified) {
+            return false;
+        }
+        sweeps[slot] = sweep;
+        return true;
+    }
+
+    public synchronized void beginSweep() {
+        sweep++;
+    }
+
+    public synchronized int endSweep() {
+        int removed = 0;
+        for (int slot = 0; slot < count; slot++) {
+            if (sizes[slot] >= 0 && sweeps[slot] != sweep) {
+                sizes[slot] = -1;
+                live--;
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public synchronized List<File> nearestFolders(ImageFeatures query, int limit) {
+        float[] bestDistances = new float[NEIGHBOURS];
+        int[] bestSlots = new int[NEIGHBOURS];
+        int found = 0;
+        float worst = Float.MAX_VALUE;
+        long queryHash = query.hash();
+        int queryHour = query.captureHour();
+        int queryCamera = query.camera();
+        long queryLow = pack(query.histogram(), 0);
+        long queryHigh = pack(query.histogram(), BINS / 2);
+        float hashScale = HASH_WEIGHT / 64;
+        float histogramScale = HISTOGRAM_WEIGHT / (2 * ImageFeatures.HISTOGRAM_SCALE);
+        float unknownDate = DATE_WEIGHT / 2;
+        float sameCamera = queryCamera == 0 ? CAMERA_WEIGHT / 2 : 0;
+        float otherCamera = queryCamera == 0 ? CAMERA_WEIGHT / 2 : CAMERA_WEIGHT;
+        float unknownCamera = queryCamera == 0 ? 0 : CAMERA_WEIGHT / 2;
+        for (int slot = 0; slot < count; slot++) {
+            float distance = Long.bitCount(queryHash ^ hashes[slot]) * hashScale;
+            int hour = hours[slot];
+            if (queryHour == ImageFeatures.UNKNOWN_HOUR || hour == ImageFeatures.UNKNOWN_HOUR) {
+                distance += unknownDate;
+            } else {
+                long apart = Math.abs((long) queryHour - hour);
+                distance += DATE_TERMS[64 - Long.numberOfLeadingZeros(apart)];
+            }
+            int camera = cameras[slot];
+            distance += camera == queryCamera ? sameCamera : otherCamera;
+            distance -= camera == 0 ? unknownCamera : 0;
+            if (distance >= worst || sizes[slot] < 0) {
+                continue;
+            }
+            distance += (laneDistance(queryLow, histograms[slot * 2]) + laneDistance(queryHigh, histograms[slot * 2 + 1])) * histogramScale;
+            if (distance >= worst) {
+                continue;
+            }
+            int position = found < NEIGHBOURS ? found++ : NEIGHBOURS - 1;
+            while (position > 0 && bestDistances[position - 1] > distance) {
+                bestDistances[position] = bestDistances[position - 1];
+                bestSlots[position] = bestSlots[position - 1];
+                position--;
+            }
+            bestDistances[position] = distance;
+            bestSlots[position] = slot;
+            if (found == NEIGHBOURS) {
+                worst = bestDistances[NEIGHBOURS - 1];
+            }
+        }
+        return vote(bestDistances, bestSlots, found, limit);
+    }
+
+    private static long pack(byte[] histogram, int from) {
+        long packed = 0;
+        for (int bin = from + BINS / 2 - 1; bin >= from; bin--) {
+            packed = (packed << 8) | Math.min(ImageFeatures.HISTOGRAM_SCALE, histogram[bin] & 0xFF);
+        }
+        return packed;
+    }
+
+    private static void unpack(long packed, byte[] histogram, int from) {
+        for (int bin = from; bin < from + BINS / 2; bin++) {
+            histogram[bin] = (byte) packed;
+            packed >>>= 8;
+        }
+    }
+
+    // Sum of |a - b| over eight 7-bit lanes without unpacking: each lane is biased by 128 so the subtraction
+    // cannot borrow from its neighbour, and the lane's high bit then tells which operand was larger.
+    private static int laneDistance(long a, long b) {
+        long aMinusB = (a | LANE_HIGH_BITS) - b;
+        long bMinusA = (b | LANE_HIGH_BITS) - a;
+        long aLarger = ((aMinusB & LANE_HIGH_BITS) >>> 7) * 0xFF;
+        long difference = ((aMinusB & aLarger) | (bMinusA & ~aLarger)) & ~LANE_HIGH_BITS;
+        long pairs = (difference & EVEN_LANES) + ((difference >>> 8) & EVEN_LANES);
+        return (int) ((pairs * WORD_SUM) >>> 48);
+    }
+
+    private List<File> vote(float[] distances, int[] slots, int found, int limit) {
+        int[] votedFolders = new int[found];
+        float[] votes = new float[found];
+        int candidates = 0;
+        for (int i = 0; i < found; i++) {
+            int folder = folderOf[slots[i]];
+            int candidate = 0;
+            while (candidate < candidates && votedFolders[candidate] != folder) {
+                candidate++;
+            }
+            if (candidate == candidates) {
+                votedFolders[candidates++] = folder;
+            }
+            votes[candidate] += 1f / (distances[i] + VOTE_SMOOTHING);
+        }
+        List<File> result = new ArrayList<>(Math.min(limit, candidates));
+        for (int pick = 0; pick < Math.min(limit, candidates); pick++) {
+            int best = -1;
+            for (int candidate = 0; candidate < candidates; candidate++) {
+                if (votes[candidate] >= 0 && (best < 0 || votes[candidate] > votes[best])) {
+                    best = candidate;
+                }
+            }
+            result.add(folders.get(votedFolders[best]));
+            votes[best] = -1;
+        }
+        return result;
+    }
+
+    public synchronized void save(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        int[] folderLive = new int[folders.size()];
+        for (int slot = 0; slot < count; slot++) {
+            if (sizes[slot] >= 0) {
+                folderLive[folderOf[slot]]++;
+            }
+        }
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(folders.size());
+            for (int folder = 0; folder < folders.size(); folder++) {
+                writeString(output, folderLive[folder] > 0 ? folders.get(folder).getPath() : "");
+            }
+            output.writeInt(live);
+            for (int slot = 0; slot < count; slot++) {
+                if (sizes[slot] < 0) {
+                    continue;
+                }
+                output.writeInt(folderOf[slot]);
+                writeString(output, names[slot]);
+                output.writeLong(sizes[slot]);
+                output.writeLong(lastModified[slot]);
+                output.writeLong(hashes[slot]);
+                output.writeInt(hours[slot]);
+                output.writeInt(cameras[slot]);
+                output.writeLong(histograms[slot * 2]);
+                output.writeLong(histograms[slot * 2 + 1]);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static FeatureIndex load(Path file) throws IOException {
+        FeatureIndex index = new FeatureIndex();
+        if (!Files.isRegularFile(file)) {
+            return index;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Unsupported suggestion index format: " + file);
+            }
+            File[] savedFolders = new File[input.readInt()];
+            for (int folder = 0; folder < savedFolders.length; folder++) {
+                String path = readString(input);
+                savedFolders[folder] = path.isEmpty() ? null : new File(path);
+            }
+            int entries = input.readInt();
+            for (int i = 0; i < entries; i++) {
+                File folder = savedFolders[input.readInt()];
+                String name = readString(input);
+                long size = input.readLong();
+                long modified = input.readLong();
+                long hash = input.readLong();
+                int hour = input.readInt();
+                int camera = input.readInt();
+                byte[] histogram = new byte[BINS];
+                unpack(input.readLong(), histogram, 0);
+                unpack(input.readLong(), histogram, BINS / 2);
+                index.put(new File(folder, name), size, modified, new ImageFeatures(hash, histogram, hour, camera));
+            }
+        }
+        return index;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readUnsignedShort()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int folderId(File folder) {
+        Integer id = folderIds.get(folder);
+        if (id == null) {
+            id = folders.size();
+            folders.add(folder);
+            folderIds.put(folder, id);
+        }
+        return id;
+    }
+
+    private int find(int folder, String name) {
+        int mask = table.length - 1;
+        for (int position = hash(folder, name) & mask; table[position] != 0; position = (position + 1) & mask) {
+            int slot = table[position] - 1;
+            if (folderOf[slot] == folder && names[slot].equals(name)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int append(int folder, String name) {
+        if (count == folderOf.length) {
+            int capacity = count * 2;
+            folderOf = Arrays.copyOf(folderOf, capacity);
+            names = Arrays.copyOf(names, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            lastModified = Arrays.copyOf(lastModified, capacity);
+            sweeps = Arrays.copyOf(sweeps, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            hours = Arrays.copyOf(hours, capacity);
+            cameras = Arrays.copyOf(cameras, capacity);
+            histograms = Arrays.copyOf(histograms, capacity * 2);
+        }
+        int slot = count++;
+        folderOf[slot] = folder;
+        names[slot] = name;
+        live++;
+        if (count * 2 > table.length) {
+            table = new int[table.length * 2];
+            for (int existing = 0; existing < count; existing++) {
+                insert(existing);
+            }
+        } else {
+            insert(slot);
+        }
+        return slot;
+    }
+
+    private void insert(int slot) {
+        int mask = table.length - 1;
+        int position = hash(folderOf[slot], names[slot]) & mask;
+        while (table[position] != 0) {
+            position = (position + 1) & mask;
+        }
+        table[position] = slot + 1;
+    }
+
+    private static int hash(int folder, String name) {
+        int hash = name.hashCode() * 31 + folder;
+        return hash ^ (hash >>> 16);
+    }
+}
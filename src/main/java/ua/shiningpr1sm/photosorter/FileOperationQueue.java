@@ -0,0 +1,196 @@
+package ua.shiningpr1sm.photosorter;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class FileOperationQueue {
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 200;
+
+    private final ExecutorService executor;
+    private final Map<Path, CompletableFuture<Void>> tails = new HashMap<>();
+    private final FailureHandler failureHandler;
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    public interface Operation {
+        void run() throws IOException;
+    }
+
+    public interface FailureHandler {
+        void failed(Ticket ticket, Throwable error);
+    }
+
+    public enum State {
+        PENDING, RUNNING, DONE, FAILED, CANCELLED
+    }
+
+    public static final class Ticket {
+        private final String description;
+        private final AtomicReference<State> state = new AtomicReference<>(State.PENDING);
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+        private Ticket(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public State getState() {
+            return state.get();
+        }
+
+        public boolean cancel() {
+            if (state.compareAndSet(State.PENDING, State.CANCELLED)) {
+                completion.complete(null);
+                return true;
+            }
+            return false;
+        }
+
+        public CompletableFuture<Void> completion() {
+            return completion;
+        }
+    }
+
+    public FileOperationQueue(int threads, FailureHandler failureHandler) {
+        this.failureHandler = failureHandler;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "file-operations-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Ticket submit(List<Path> paths, String description, Operation operation) {
+        return submit(paths, description, operation, null);
+    }
+
+    public synchronized Ticket submit(List<Path> paths, String description, Operation operation, CompletableFuture<?> precondition) {
+        Ticket ticket = new Ticket(description);
+        List<CompletableFuture<?>> predecessors = new ArrayList<>();
+        if (precondition != null) {
+            predecessors.add(precondition);
+        }
+        for (Path path : paths) {
+            CompletableFuture<Void> tail = tails.get(key(path));
+            if (tail != null) {
+                predecessors.add(tail);
+            }
+        }
+        CompletableFuture<Void> after = CompletableFuture.allOf(predecessors.toArray(new CompletableFuture<?>[0]));
+        CompletableFuture<Void> done = after.handleAsync((ignored, error) -> {
+            execute(ticket, operation, precondition != null ? precondition.handle((value, failure) -> failure).join() : null);
+            return null;
+        }, executor);
+        for (Path path : paths) {
+            tails.put(key(path), done);
+        }
+        pendingCount.incrementAndGet();
+        done.whenComplete((ignored, error) -> {
+            pendingCount.decrementAndGet();
+            synchronized (this) {
+                for (Path path : paths) {
+                    tails.remove(key(path), done);
+                }
+            }
+        });
+        return ticket;
+    }
+
+    public synchronized CompletableFuture<Void> whenSettled(Path path) {
+        CompletableFuture<Void> tail = tails.get(key(path));
+        return tail != null ? tail.handle((ignored, error) -> null) : CompletableFuture.completedFuture(null);
+    }
+
+    public synchronized boolean isPending(Path path) {
+        return tails.containsKey(key(path));
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public boolean awaitIdle(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (pendingCount.get() > 0) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void execute(Ticket ticket, Operation operation, Throwable refused) {
+        if (!ticket.state.compareAndSet(State.PENDING, State.RUNNING)) {
+            return;
+        }
+        if (refused != null) {
+            fail(ticket, refused instanceof CompletionException && refused.getCause() != null ? refused.getCause() : refused);
+            return;
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                operation.run();
+                ticket.state.set(State.DONE);
+                ticket.completion.complete(null);
+                return;
+            } catch (FileSystemException e) {
+                if (e instanceof NoSuchFileException || attempt >= MAX_ATTEMPTS) {
+                    fail(ticket, e);
+                    return;
+                }
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    fail(ticket, e);
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(ticket, e);
+                return;
+            } catch (Error e) {
+                fail(ticket, e);
+                throw e;
+            }
+        }
+    }
+
+    private void fail(Ticket ticket, Throwable error) {
+        ticket.state.set(State.FAILED);
+        ticket.completion.completeExceptionally(error);
+        System.err.println(ticket.description + " failed: " + error.getMessage());
+        SwingUtilities.invokeLater(() -> failureHandler.failed(ticket, error));
+    }
+
+    private static Path key(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,296 @@
+package ua.shiningpr1sm.photosorter;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class FolderIndex {
+    private static final int MAGIC = 0x50534958;
+    private static final int VERSION = 1;
+    private static final int THUMBNAIL_SIZE = 160;
+    private static final long AUTO_SAVE_SECONDS = 30;
+
+    private final Path indexDirectory;
+    private final String indexName;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private long generation;
+    private volatile boolean dirty;
+    private ScheduledExecutorService autoSave;
+
+    public record Entry(long size, long lastModified, int width, int height, byte[] contentHash, ByteBuffer thumbnail) {
+        public Entry withContentHash(byte[] hash) {
+            return new Entry(size, lastModified, width, height, hash, thumbnail);
+        }
+
+        public byte[] thumbnailBytes() {
+            if (thumbnail == null) {
+                return null;
+            }
+            ByteBuffer copy = thumbnail.duplicate();
+            byte[] bytes = new byte[copy.remaining()];
+            copy.get(bytes);
+            return bytes;
+        }
+    }
+
+    private FolderIndex(Path indexDirectory, String indexName) {
+        this.indexDirectory = indexDirectory;
+        this.indexName = indexName;
+    }
+
+    public static FolderIndex open(Path configDirectory, File folder) {
+        Path indexDirectory = configDirectory.resolve("index");
+        String indexName = Integer.toHexString(folder.getAbsolutePath().hashCode()) + "-" + folder.getName().replaceAll("[^A-Za-z0-9_-]", "_");
+        FolderIndex index = new FolderIndex(indexDirectory, indexName);
+        try {
+            Files.createDirectories(indexDirectory);
+            index.load();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not load folder index for " + folder.getAbsolutePath() + ": " + e.getMessage());
+            index.entries.clear();
+        }
+        return index;
+    }
+
+    public Entry lookup(File file) {
+        Entry entry = entries.get(file.getName());
+        if (entry == null) {
+            return null;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            if (attributes.size() == entry.size() && attributes.lastModifiedTime().toMillis() == entry.lastModified()) {
+                return entry;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        entries.remove(file.getName(), entry);
+        dirty = true;
+        return null;
+    }
+
+    public void record(File file, PreviewDecoder.Result decoded, BufferedImage preview) {
+        if (lookup(file) != null) {
+            return;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            byte[] hash = ContentHasher.hash(file.toPath());
+            BufferedImage thumbnail = ImageScaler.scaleToFit(preview, THUMBNAIL_SIZE, THUMBNAIL_SIZE, ImageScaler.Quality.BALANCED);
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            ImageIO.write(toRgb(thumbnail), "jpg", encoded);
+            put(file, new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(),
+                    decoded.sourceWidth(), decoded.sourceHeight(), hash, ByteBuffer.wrap(encoded.toByteArray())));
+        } catch (IOException e) {
+            System.err.println("Could not index " + file.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    public static BufferedImage decodeThumbnail(Entry entry) {
+        byte[] bytes = entry.thumbnailBytes();
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return ImageIO.read(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public void put(File file, Entry entry) {
+        entries.put(file.getName(), entry);
+        dirty = true;
+    }
+
+    public void remove(File file) {
+        if (entries.remove(file.getName()) != null) {
+            dirty = true;
+        }
+    }
+
+    public void retainOnly(Set<String> fileNames) {
+        if (entries.keySet().retainAll(fileNames)) {
+            dirty = true;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public synchronized void startAutoSave() {
+        if (autoSave != null) {
+            return;
+        }
+        autoSave = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "folder-index-save");
+            thread.setDaemon(true);
+            return thread;
+        });
+        autoSave.scheduleWithFixedDelay(this::save, AUTO_SAVE_SECONDS, AUTO_SAVE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public synchronized void close() {
+        if (autoSave != null) {
+            autoSave.shutdownNow();
+            autoSave = null;
+        }
+        save();
+    }
+
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        long nextGeneration = generation + 1;
+        Path target = indexFile(nextGeneration);
+        Path temp = indexDirectory.resolve(target.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            Map<String, Entry> snapshot = Map.copyOf(entries);
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(nextGeneration);
+            output.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> item : snapshot.entrySet()) {
+                Entry entry = item.getValue();
+                byte[] name = item.getKey().getBytes(StandardCharsets.UTF_8);
+                output.writeShort(name.length);
+                output.write(name);
+                output.writeLong(entry.size());
+                output.writeLong(entry.lastModified());
+                output.writeInt(entry.width());
+                output.writeInt(entry.height());
+                byte[] hash = entry.contentHash() != null ? entry.contentHash() : new byte[0];
+                output.writeByte(hash.length);
+                output.write(hash);
+                byte[] thumbnail = entry.thumbnailBytes();
+                output.writeInt(thumbnail != null ? thumbnail.length : 0);
+                if (thumbnail != null) {
+                    output.write(thumbnail);
+                }
+            }
+        } catch (IOException e) {
+            dirty = true;
+            System.err.println("Could not save folder index " + target + ": " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            generation = nextGeneration;
+            deleteOlderGenerations();
+        } catch (IOException e) {
+            dirty = true;
+            System.err.println("Could not replace folder index " + target + ": " + e.getMessage());
+        }
+    }
+
+    private void load() throws IOException {
+        Path latest = null;
+        long latestGeneration = -1;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(indexDirectory, indexName + ".*.idx")) {
+            for (Path path : stream) {
+                long fileGeneration = parseGeneration(path);
+                if (fileGeneration > latestGeneration) {
+                    latestGeneration = fileGeneration;
+                    latest = path;
+                }
+            }
+        }
+        if (latest == null) {
+            return;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(latest, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 20 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Unsupported index format: " + latest);
+        }
+        generation = buffer.getLong();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(name);
+            long size = buffer.getLong();
+            long lastModified = buffer.getLong();
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            byte[] hash = new byte[buffer.get() & 0xFF];
+            buffer.get(hash);
+            int thumbnailLength = buffer.getInt();
+            ByteBuffer thumbnail = null;
+            if (thumbnailLength > 0) {
+                thumbnail = buffer.slice(buffer.position(), thumbnailLength).asReadOnlyBuffer();
+                buffer.position(buffer.position() + thumbnailLength);
+            }
+            entries.put(new String(name, StandardCharsets.UTF_8),
+                    new Entry(size, lastModified, width, height, hash.length > 0 ? hash : null, thumbnail));
+        }
+    }
+
+    private void deleteOlderGenerations() {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(indexDirectory, indexName + ".*.idx")) {
+            for (Path path : stream) {
+                if (parseGeneration(path) < generation) {
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException e) {
+                        // Still memory-mapped on some platforms; removed on a later save.
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not clean up old folder index files: " + e.getMessage());
+        }
+    }
+
+    static BufferedImage toRgb(BufferedImage image) {
+        if (!image.getColorModel().hasAlpha()) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = rgb.createGraphics();
+        g2d.drawImage(image, 0, 0, Color.WHITE, null);
+        g2d.dispose();
+        return rgb;
+    }
+
+    private Path indexFile(long fileGeneration) {
+        return indexDirectory.resolve(indexName + "." + fileGeneration + ".idx");
+    }
+
+    private long parseGeneration(Path path) {
+        String name = path.getFileName().toString();
+        String middle = name.substring(indexName.length() + 1, name.length() - ".idx".length());
+        try {
+            return Long.parseLong(middle);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class FolderNameIndex {
+    private final File[] folders;
+    private final String[] names;
+    private final int[] byName;
+    private final Map<Integer, int[]> trigrams;
+
+    public FolderNameIndex(Collection<File> allFolders) {
+        folders = allFolders.toArray(new File[0]);
+        names = new String[folders.length];
+        for (int i = 0; i < folders.length; i++) {
+            names[i] = folders[i].getName().toLowerCase(Locale.ROOT);
+        }
+        Integer[] order = new Integer[folders.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing((Integer i) -> names[i]).thenComparing(i -> folders[i].getPath()));
+        byName = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            byName[i] = order[i];
+        }
+        trigrams = buildTrigrams();
+    }
+
+    public int size() {
+        return folders.length;
+    }
+
+    public List<File> search(String query, int limit) {
+        String needle = query.trim().toLowerCase(Locale.ROOT);
+        List<File> result = new ArrayList<>();
+        if (needle.isEmpty()) {
+            return result;
+        }
+        int start = lowerBound(needle);
+        boolean[] taken = new boolean[folders.length];
+        for (int i = start; i < byName.length && result.size() < limit && names[byName[i]].startsWith(needle); i++) {
+            taken[byName[i]] = true;
+            result.add(folders[byName[i]]);
+        }
+        if (result.size() >= limit) {
+            return result;
+        }
+        List<Integer> contained = new ArrayList<>();
+        for (int candidate : candidates(needle)) {
+            if (!taken[candidate] && names[candidate].contains(needle)) {
+                contained.add(candidate);
+            }
+        }
+        contained.sort(Comparator.comparingInt((Integer i) -> names[i].length()).thenComparing(i -> names[i]));
+        for (int i = 0; i < contained.size() && result.size() < limit; i++) {
+            result.add(folders[contained.get(i)]);
+        }
+        return result;
+    }
+
+    private int[] candidates(String needle) {
+        if (needle.length() < 3) {
+            int[] all = new int[folders.length];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        int[] smallest = null;
+        for (int i = 0; i + 3 <= needle.length(); i++) {
+            int[] postings = trigrams.get(trigram(needle, i));
+            if (postings == null) {
+                return new int[0];
+            }
+            if (smallest == null || postings.length < smallest.length) {
+                smallest = postings;
+            }
+        }
+        return smallest;
+    }
+
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = byName.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (names[byName[mid]].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private Map<Integer, int[]> buildTrigrams() {
+        Map<Integer, List<Integer>> lists = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i];
+            int previous = Integer.MIN_VALUE;
+            for (int j = 0; j + 3 <= name.length(); j++) {
+                int key = trigram(name, j);
+                if (key == previous) {
+                    continue;
+                }
+                List<Integer> postings = lists.computeIfAbsent(key, k -> new ArrayList<>());
+                if (postings.isEmpty() || postings.get(postings.size() - 1) != i) {
+                    postings.add(i);
+                }
+                previous = key;
+            }
+        }
+        Map<Integer, int[]> result = new HashMap<>(lists.size() * 2);
+        lists.forEach((key, postings) -> result.put(key, postings.stream().mapToInt(Integer::intValue).toArray()));
+        return result;
+    }
+
+    private static int trigram(String text, int offset) {
+        return (text.charAt(offset) * 31 + text.charAt(offset + 1)) * 31 + text.charAt(offset + 2);
+    }
+}
@@ -0,0 +1,256 @@
+package ua.shiningpr1sm.photosorter;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public class FolderPicker extends JPanel {
+    private static final File PARENT_ENTRY = new File("..");
+    private static final int MAX_RESULTS = 500;
+    private static final int CELL_WIDTH = 160;
+    private static final int CELL_HEIGHT = 40;
+    private static final int VISIBLE_ROWS = 4;
+    private static final Color HOVER_BACKGROUND = new Color(225, 230, 240);
+    private static final Color CELL_BORDER = new Color(180, 180, 180);
+
+    private final JTextField filterField = new JTextField(24);
+    private final DefaultListModel<File> model = new DefaultListModel<>();
+    private final JList<File> list = new JList<>(model);
+    private final Supplier<Collection<File>> allFolders;
+    private final Consumer<File> onSelect;
+    private final Runnable onBack;
+    private final File root;
+    private List<File> browseFolders = List.of();
+    private boolean showParent;
+    private FolderNameIndex nameIndex;
+    private int hoverIndex = -1;
+
+    public FolderPicker(File root, Supplier<Collection<File>> allFolders, Consumer<File> onSelect, Runnable onBack) {
+        super(new BorderLayout(5, 5));
+        this.root = root.getAbsoluteFile();
+        this.allFolders = allFolders;
+        this.onSelect = onSelect;
+        this.onBack = onBack;
+
+        list.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        list.setVisibleRowCount(-1);
+        list.setFixedCellWidth(CELL_WIDTH);
+        list.setFixedCellHeight(CELL_HEIGHT);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setCellRenderer(new FolderCellRenderer());
+        ToolTipManager.sharedInstance().registerComponent(list);
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = indexAt(e.getPoint());
+                if (SwingUtilities.isLeftMouseButton(e) && index >= 0) {
+                    activate(model.get(index));
+                }
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                setHoverIndex(-1);
+            }
+        });
+        list.addMouseMotionListener(new MouseAdapter() {
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                setHoverIndex(indexAt(e.getPoint()));
+            }
+        });
+        list.getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "ACTIVATE");
+        list.getActionMap().put("ACTIVATE", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                File selected = list.getSelectedValue();
+                if (selected != null) {
+                    activate(selected);
+                }
+            }
+        });
+
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                refreshList();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                refreshList();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                refreshList();
+            }
+        });
+        filterField.getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "ACTIVATE_FIRST");
+        filterField.getActionMap().put("ACTIVATE_FIRST", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                if (!model.isEmpty()) {
+                    activate(model.get(0));
+                }
+            }
+        });
+        filterField.getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "CLEAR_FILTER");
+        filterField.getActionMap().put("CLEAR_FILTER", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                clearFilter();
+            }
+        });
+        filterField.getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(KeyEvent.VK_DOWN, 0), "FOCUS_LIST");
+        filterField.getActionMap().put("FOCUS_LIST", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                if (!model.isEmpty()) {
+                    list.setSelectedIndex(0);
+                    list.requestFocusInWindow();
+                }
+            }
+        });
+
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        filterPanel.add(new JLabel("Find folder (Ctrl+F):"));
+        filterPanel.add(filterField);
+
+        JScrollPane scrollPane = new JScrollPane(list, ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED,
+                ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+        scrollPane.setPreferredSize(new Dimension(CELL_WIDTH, CELL_HEIGHT * VISIBLE_ROWS + 4));
+        scrollPane.getVerticalScrollBar().setUnitIncrement(CELL_HEIGHT);
+
+        add(filterPanel, BorderLayout.NORTH);
+        add(scrollPane, BorderLayout.CENTER);
+    }
+
+    public void showFolders(List<File> folders, boolean showParent) {
+        this.browseFolders = List.copyOf(folders);
+        this.showParent = showParent;
+        if (!isFiltering()) {
+            refreshList();
+        }
+    }
+
+    public void invalidateIndex() {
+        nameIndex = null;
+        if (isFiltering()) {
+            refreshList();
+        }
+    }
+
+    public boolean isFilterFocused() {
+        return filterField.isFocusOwner();
+    }
+
+    public void focusFilter() {
+        filterField.requestFocusInWindow();
+        filterField.selectAll();
+    }
+
+    private boolean isFiltering() {
+        return !filterField.getText().isBlank();
+    }
+
+    private void refreshList() {
+        model.clear();
+        hoverIndex = -1;
+        if (isFiltering()) {
+            if (nameIndex == null) {
+                nameIndex = new FolderNameIndex(allFolders.get());
+            }
+            model.addAll(nameIndex.search(filterField.getText(), MAX_RESULTS));
+        } else {
+            if (showParent) {
+                model.addElement(PARENT_ENTRY);
+            }
+            model.addAll(browseFolders);
+        }
+        list.ensureIndexIsVisible(0);
+    }
+
+    private void activate(File folder) {
+        boolean wasFiltering = isFiltering();
+        if (wasFiltering) {
+            filterField.setText("");
+        }
+        if (folder == PARENT_ENTRY) {
+            onBack.run();
+        } else {
+            onSelect.accept(folder);
+        }
+        if (wasFiltering) {
+            returnFocus();
+        }
+    }
+
+    private void clearFilter() {
+        filterField.setText("");
+        returnFocus();
+    }
+
+    private void returnFocus() {
+        Window window = SwingUtilities.getWindowAncestor(this);
+        if (window != null) {
+            window.requestFocusInWindow();
+        }
+    }
+
+    private int indexAt(Point point) {
+        int index = list.locationToIndex(point);
+        if (index < 0) {
+            return -1;
+        }
+        Rectangle bounds = list.getCellBounds(index, index);
+        return bounds != null && bounds.contains(point) ? index : -1;
+    }
+
+    private void setHoverIndex(int index) {
+        if (index == hoverIndex) {
+            return;
+        }
+        repaintCell(hoverIndex);
+        hoverIndex = index;
+        repaintCell(hoverIndex);
+    }
+
+    private void repaintCell(int index) {
+        if (index >= 0 && index < model.size()) {
+            Rectangle bounds = list.getCellBounds(index, index);
+            if (bounds != null) {
+                list.repaint(bounds);
+            }
+        }
+    }
+
+    private String displayName(File folder) {
+        if (folder == PARENT_ENTRY || !isFiltering()) {
+            return folder.getName();
+        }
+        String path = folder.getAbsolutePath();
+        String rootPath = root.getPath() + File.separator;
+        return path.startsWith(rootPath) ? path.substring(rootPath.length()) : path;
+    }
+
+    private class FolderCellRenderer extends DefaultListCellRenderer {
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+            File folder = (File) value;
+            String name = displayName(folder);
+            super.getListCellRendererComponent(list, name, index, isSelected, cellHasFocus);
+            setHorizontalAlignment(SwingConstants.CENTER);
+            setToolTipText(folder == PARENT_ENTRY ? null : folder.getAbsolutePath());
+            if (!isSelected && index == hoverIndex) {
+                setBackground(HOVER_BACKGROUND);
+            }
+            setBorder(BorderFactory.createCompoundBorder(BorderFactory.createEmptyBorder(2, 2, 2, 2),
+                    BorderFactory.createLineBorder(CELL_BORDER)));
+            return this;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class FolderSuggester {
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png");
+    private static final int RECENT_FEATURES = 64;
+    private static final int SAVE_EVERY = 5000;
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    private final File root;
+    private final Path indexFile;
+    private final FeatureIndex index;
+    private final ExecutorService worker;
+    private final Map<File, ImageFeatures> recent = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, ImageFeatures> eldest) {
+            return size() > RECENT_FEATURES;
+        }
+    });
+    private volatile boolean closed;
+    private volatile boolean dirty;
+
+    private FolderSuggester(File root, Path indexFile, FeatureIndex index) {
+        this.root = root.getAbsoluteFile();
+        this.indexFile = indexFile;
+        this.index = index;
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "folder-suggester");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static FolderSuggester open(Path configDirectory, File root) {
+        Path indexFile = configDirectory.resolve("suggestions")
+                .resolve(Integer.toHexString(root.getAbsolutePath().hashCode()) + "-" + root.getName().replaceAll("[^A-Za-z0-9_-]", "_") + ".idx");
+        FeatureIndex index;
+        try {
+            Files.createDirectories(indexFile.getParent());
+            index = FeatureIndex.load(indexFile);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not load folder suggestions for " + root.getAbsolutePath() + ": " + e.getMessage());
+            index = new FeatureIndex();
+        }
+        return new FolderSuggester(root, indexFile, index);
+    }
+
+    public void start() {
+        Thread scanner = new Thread(this::scan, "folder-suggester-scan");
+        scanner.setDaemon(true);
+        scanner.setPriority(Thread.MIN_PRIORITY);
+        scanner.start();
+    }
+
+    public CompletableFuture<List<File>> suggest(File file, int limit) {
+        if (!isImage(file)) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            ImageFeatures features = features(file);
+            if (features == null) {
+                return List.of();
+            }
+            long start = System.nanoTime();
+            List<File> suggestions = new ArrayList<>(index.nearestFolders(features, limit));
+            Metrics.record(Metrics.Stage.SUGGEST, start, true);
+            suggestions.removeIf(folder -> !folder.isDirectory());
+            return suggestions;
+        }, worker);
+    }
+
+    public void fileLanded(File source, File target) {
+        if (closed || !isImage(target) || !isIndexed(target.getAbsoluteFile().toPath())) {
+            return;
+        }
+        worker.execute(() -> {
+            ImageFeatures features = recent.remove(source.getAbsoluteFile());
+            if (features == null) {
+                features = ImageFeatures.read(target);
+            }
+            if (features != null && target.isFile()) {
+                index.put(target, target.length(), target.lastModified(), features);
+                dirty = true;
+            }
+        });
+    }
+
+    public void fileRemoved(File file) {
+        if (index.remove(file)) {
+            dirty = true;
+        }
+    }
+
+    public void close() {
+        closed = true;
+        worker.shutdown();
+        try {
+            worker.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        save();
+    }
+
+    private ImageFeatures features(File file) {
+        File key = file.getAbsoluteFile();
+        ImageFeatures features = recent.get(key);
+        if (features == null) {
+            features = ImageFeatures.read(file);
+            if (features != null) {
+                recent.put(key, features);
+            }
+        }
+        return features;
+    }
+
+    private synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        try {
+            index.save(indexFile);
+        } catch (IOException e) {
+            dirty = true;
+            System.err.println("Could not save folder suggestions " + indexFile + ": " + e.getMessage());
+        }
+    }
+
+    private void scan() {
+        int[] extracted = {0};
+        index.beginSweep();
+        Path rootPath = root.toPath();
+        try {
+            Files.walkFileTree(rootPath, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (closed) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    Path name = dir.getFileName();
+                    if (!dir.equals(rootPath) && name != null && FolderTree.isHiddenFolder(name.toString())) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                    File file = path.toFile();
+                    if (!attrs.isRegularFile() || !isImage(file) || !isIndexed(path)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    long modified = attrs.lastModifiedTime().toMillis();
+                    if (index.touch(file, attrs.size(), modified)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    ImageFeatures features = ImageFeatures.read(file);
+                    if (features != null) {
+                        index.put(file, attrs.size(), modified, features);
+                        dirty = true;
+                        if (++extracted[0] % SAVE_EVERY == 0) {
+                            save();
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path path, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Error indexing destination folder " + root + ": " + e.getMessage());
+            return;
+        }
+        if (closed) {
+            return;
+        }
+        if (index.endSweep() > 0) {
+            dirty = true;
+        }
+        save();
+    }
+
+    private boolean isIndexed(Path path) {
+        Path parent = path.getParent();
+        return parent != null && parent.startsWith(root.toPath()) && !parent.equals(root.toPath());
+    }
+
+    private static boolean isImage(File file) {
+        String name = file.getName();
+        int lastDot = name.lastIndexOf('.');
+        return lastDot >= 0 && IMAGE_EXTENSIONS.contains(name.substring(lastDot + 1).toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,247 @@
+package ua.shiningpr1sm.photosorter;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+public class FolderTree {
+    private final File root;
+    private final Map<File, List<File>> children = new ConcurrentHashMap<>();
+    private final Set<File> watched = ConcurrentHashMap.newKeySet();
+    private final Map<WatchKey, File> watchKeys = new ConcurrentHashMap<>();
+    private final List<Consumer<File>> listeners = new CopyOnWriteArrayList<>();
+    private WatchService watchService;
+    private volatile boolean closed;
+    private volatile boolean ready;
+
+    public FolderTree(File root) {
+        this.root = root.getAbsoluteFile();
+    }
+
+    public static boolean isHiddenFolder(String name) {
+        return name.equals(RecycleBin.BIN_FOLDER) || name.startsWith(RecycleBin.DELETE_FOLDER_PREFIX);
+    }
+
+    public void addChangeListener(Consumer<File> listener) {
+        listeners.add(listener);
+    }
+
+    public void start() {
+        try {
+            watchService = root.toPath().getFileSystem().newWatchService();
+        } catch (IOException e) {
+            System.err.println("File system watching is not available: " + e.getMessage());
+        }
+        Thread loader = new Thread(() -> {
+            scan(root);
+            ready = true;
+            notifyChanged(root);
+            if (watchService != null) {
+                watchLoop();
+            }
+        }, "folder-tree");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public List<File> childFolders(File folder) {
+        File key = folder.getAbsoluteFile();
+        List<File> cached = children.get(key);
+        if (cached != null && watched.contains(key)) {
+            return cached;
+        }
+        List<File> listed = listChildFolders(key);
+        children.put(key, listed);
+        return listed;
+    }
+
+    public List<File> allFolders() {
+        List<File> result = new ArrayList<>();
+        for (List<File> folders : children.values()) {
+            result.addAll(folders);
+        }
+        return result;
+    }
+
+    public boolean hasChildFolders(File folder) {
+        return !childFolders(folder).isEmpty();
+    }
+
+    public void refresh(File folder) {
+        File key = folder.getAbsoluteFile();
+        children.put(key, listChildFolders(key));
+        notifyChanged(key);
+    }
+
+    public void close() {
+        closed = true;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                System.err.println("Could not close folder watcher: " + e.getMessage());
+            }
+        }
+    }
+
+    private void scan(File start) {
+        Path startPath = start.toPath();
+        Map<File, List<File>> found = new HashMap<>();
+        try {
+            Files.walkFileTree(startPath, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (closed) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    Path name = dir.getFileName();
+                    if (!dir.equals(startPath) && name != null && isHiddenFolder(name.toString())) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    File folder = dir.toFile().getAbsoluteFile();
+                    register(folder);
+                    found.put(folder, new ArrayList<>());
+                    List<File> siblings = found.get(folder.getParentFile());
+                    if (!dir.equals(startPath) && siblings != null) {
+                        siblings.add(folder);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                    File folder = dir.toFile().getAbsoluteFile();
+                    List<File> folders = found.remove(folder);
+                    if (folders != null) {
+                        Collections.sort(folders);
+                        children.put(folder, Collections.unmodifiableList(folders));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Error scanning destination folder " + start + ": " + e.getMessage());
+        }
+    }
+
+    private void register(File folder) {
+        if (watchService == null || watched.contains(folder)) {
+            return;
+        }
+        try {
+            WatchKey key = folder.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            watchKeys.put(key, folder);
+            watched.add(folder);
+        } catch (IOException | RuntimeException e) {
+            // Watch limit reached or folder gone; this folder will be listed on demand instead.
+        }
+    }
+
+    private void watchLoop() {
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            File folder = watchKeys.get(key);
+            if (folder != null) {
+                handleEvents(folder, key);
+            }
+            if (!key.reset()) {
+                watchKeys.remove(key);
+                if (folder != null) {
+                    forget(folder);
+                }
+            }
+        }
+    }
+
+    private void handleEvents(File folder, WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                scan(folder);
+                changed = true;
+                continue;
+            }
+            Path name = (Path) event.context();
+            if (name == null || isHiddenFolder(name.toString())) {
+                continue;
+            }
+            File child = new File(folder, name.toString());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && child.isDirectory()) {
+                scan(child);
+                changed = true;
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE
+                    && children.getOrDefault(folder, Collections.emptyList()).contains(child)) {
+                forget(child);
+                changed = true;
+            }
+        }
+        if (changed) {
+            children.put(folder, listChildFolders(folder));
+            notifyChanged(folder);
+        }
+    }
+
+    private void forget(File folder) {
+        String prefix = folder.getPath() + File.separator;
+        children.keySet().removeIf(key -> key.equals(folder) || key.getPath().startsWith(prefix));
+        watched.removeIf(key -> key.equals(folder) || key.getPath().startsWith(prefix));
+    }
+
+    private void notifyChanged(File folder) {
+        SwingUtilities.invokeLater(() -> {
+            for (Consumer<File> listener : listeners) {
+                listener.accept(folder);
+            }
+        });
+    }
+
+    private static List<File> listChildFolders(File folder) {
+        File[] folderArray = folder.listFiles(File::isDirectory);
+        if (Objects.isNull(folderArray)) {
+            return Collections.emptyList();
+        }
+        List<File> result = new ArrayList<>(folderArray.length);
+        for (File child : folderArray) {
+            if (!isHiddenFolder(child.getName())) {
+                result.add(child.getAbsoluteFile());
+            }
+        }
+        Collections.sort(result);
+        return Collections.unmodifiableList(result);
+    }
+}
@@ -0,0 +1,68 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+public class ImageCache<K> {
+    private final long maxBytes;
+    private final LinkedHashMap<K, BufferedImage> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    public ImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized BufferedImage get(K key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(K key, BufferedImage image) {
+        long size = sizeOf(image);
+        if (size > maxBytes) {
+            return;
+        }
+        BufferedImage previous = entries.put(key, image);
+        if (previous != null) {
+            currentBytes -= sizeOf(previous);
+        }
+        currentBytes += size;
+        Iterator<Map.Entry<K, BufferedImage>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<K, BufferedImage> eldest = iterator.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            currentBytes -= sizeOf(eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    public synchronized void removeIf(Predicate<K> filter) {
+        Iterator<Map.Entry<K, BufferedImage>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, BufferedImage> entry = iterator.next();
+            if (filter.test(entry.getKey())) {
+                currentBytes -= sizeOf(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public static long sizeOf(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+}
@@ -2,16 +2,19 @@ package ua.shiningpr1sm.photosorter;
 
 import javax.swing.*;
 import java.awt.*;
-import java.awt.image.BufferedImage;
 
 public class ImageCropDialog extends JDialog {
-    private BufferedImage originalImage;
-    private BufferedImage croppedImageResult;
+    private final TileSource tiles;
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private Rectangle cropRegionResult;
     private CropPanel cropPanel;
 
-    public ImageCropDialog(Frame owner, BufferedImage image) {
+    public ImageCropDialog(Frame owner, TileSource tiles, int sourceWidth, int sourceHeight) {
         super(owner, "Обрезать изображение", true);
-        this.originalImage = image;
+        this.tiles = tiles;
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
         setDefaultCloseOperation(DISPOSE_ON_CLOSE);
 
         initUI();
@@ -21,33 +24,33 @@ public class ImageCropDialog extends JDialog {
 
     private void initUI() {
         setLayout(new BorderLayout());
-        cropPanel = new CropPanel(originalImage);
-        JScrollPane scrollPane = new JScrollPane(cropPanel);
-        scrollPane.setPreferredSize(cropPanel.getPreferredSize());
-        add(scrollPane, BorderLayout.CENTER);
+        cropPanel = new CropPanel(tiles, sourceWidth, sourceHeight);
+        add(cropPanel, BorderLayout.CENTER);
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JLabel hintLabel = new JLabel("Wheel: zoom   Right drag: pan   0: fit   1: 100%");
         JButton cropButton = new JButton("Cut");
         JButton cancelButton = new JButton("Undo");
 
         cropButton.addActionListener(e -> {
-            croppedImageResult = cropPanel.getCroppedImage();
+            cropRegionResult = cropPanel.getCropRegion();
             dispose();
         });
 
         cancelButton.addActionListener(e -> {
-            croppedImageResult = null;
+            cropRegionResult = null;
             dispose();
         });
 
+        buttonPanel.add(hintLabel);
         buttonPanel.add(cropButton);
         buttonPanel.add(cancelButton);
         add(buttonPanel, BorderLayout.SOUTH);
     }
 
-    public static BufferedImage showCropDialog(JFrame parent, BufferedImage image) {
-        ImageCropDialog dialog = new ImageCropDialog(parent, image);
+    public static Rectangle showCropDialog(JFrame parent, TileSource tiles, int sourceWidth, int sourceHeight) {
+        ImageCropDialog dialog = new ImageCropDialog(parent, tiles, sourceWidth, sourceHeight);
         dialog.setVisible(true);
-        return dialog.croppedImageResult;
+        return dialog.cropRegionResult;
     }
-}
\ No newline at end of file
+}
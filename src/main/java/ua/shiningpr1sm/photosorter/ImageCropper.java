@@ -0,0 +1,197 @@
+package ua.shiningpr1sm.photosorter;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
+public final class ImageCropper {
+    public static final float DEFAULT_QUALITY = 0.92f;
+    private static final int REENCODE_BYTES_PER_PIXEL = 16;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_PIXEL_X_DIMENSION = 0xA002;
+    private static final int TAG_PIXEL_Y_DIMENSION = 0xA003;
+
+    public record Result(Rectangle region, boolean lossless, long bytes) {
+    }
+
+    private ImageCropper() {
+    }
+
+    public static Result crop(Path source, Path target, Rectangle displayRegion, float quality) throws IOException {
+        ImageMetadataReader.Metadata metadata = ImageMetadataReader.read(source.toFile());
+        if (metadata == null || metadata.width() <= 0 || metadata.height() <= 0) {
+            throw new IOException("Unsupported image: " + target.getFileName());
+        }
+        Rectangle region = ImageScaler.toStoredRegion(displayRegion, metadata.orientation(), metadata.width(), metadata.height());
+        if (region.isEmpty()) {
+            throw new IOException("The crop area lies outside the image");
+        }
+        boolean jpeg = isJpeg(source);
+        JpegLosslessCrop.Result lossless = jpeg ? JpegLosslessCrop.crop(Files.readAllBytes(source), region) : null;
+        byte[] cropped = lossless != null ? lossless.data() : reencode(source, region, jpeg, quality);
+        Rectangle written = lossless != null ? lossless.region() : region;
+        if (jpeg) {
+            updateExif(cropped, written.width, written.height);
+        }
+        replace(target, cropped);
+        return new Result(written, lossless != null, cropped.length);
+    }
+
+    private static boolean isJpeg(Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            byte[] head = input.readNBytes(2);
+            return JpegSegments.isJpeg(head, head.length);
+        }
+    }
+
+    private static byte[] reencode(Path source, Rectangle region, boolean jpeg, float quality) throws IOException {
+        long maxPixels = Runtime.getRuntime().maxMemory() / REENCODE_BYTES_PER_PIXEL;
+        if ((long) region.width * region.height > maxPixels) {
+            throw new IOException("The crop area of " + region.width + " x " + region.height
+                    + " pixels is too large to re-encode in the available memory. Choose a smaller area.");
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            if (input == null) {
+                throw new IOException("Could not open " + source.getFileName());
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, false);
+                ImageReadParam readParam = reader.getDefaultReadParam();
+                readParam.setSourceRegion(region);
+                BufferedImage image = reader.read(0, readParam);
+                IIOMetadata metadata = reader.getImageMetadata(0);
+                ImageWriter writer = ImageIO.getImageWriter(reader);
+                if (writer == null) {
+                    throw new IOException("No image writer for " + reader.getFormatName());
+                }
+                try {
+                    ImageWriteParam writeParam = writer.getDefaultWriteParam();
+                    if (jpeg) {
+                        writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                        writeParam.setCompressionQuality(quality);
+                    }
+                    try {
+                        return encode(writer, new IIOImage(image, null, metadata), writeParam);
+                    } catch (IIOException | IllegalArgumentException e) {
+                        System.err.println("Writing the cropped image without its original metadata: " + e.getMessage());
+                        return encode(writer, new IIOImage(image, null, null), writeParam);
+                    }
+                } finally {
+                    writer.dispose();
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static byte[] encode(ImageWriter writer, IIOImage image, ImageWriteParam param) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            writer.write(null, image, param);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void updateExif(byte[] jpeg, int width, int height) {
+        JpegSegments.walk(jpeg, jpeg.length, (marker, dataOffset, dataLength) -> {
+            if (marker != JpegSegments.APP1 || !JpegSegments.startsWith(jpeg, dataOffset, dataLength, "Exif\0\0")) {
+                return true;
+            }
+            TiffReader tiff = TiffReader.open(jpeg, dataOffset + 6, dataOffset + dataLength);
+            if (tiff != null) {
+                updateTiff(tiff, jpeg, width, height);
+            }
+            return false;
+        });
+    }
+
+    private static void updateTiff(TiffReader tiff, byte[] data, int width, int height) {
+        int ifd0 = tiff.firstIfdOffset();
+        int count = tiff.u16(ifd0);
+        if (count < 0 || !tiff.contains(ifd0 + 2 + count * 12, 4)) {
+            return;
+        }
+        put(tiff, data, ifd0 + 2 + count * 12, 0, 4);
+        int[] exifIfd = {-1};
+        tiff.forEachEntry(ifd0, entry -> {
+            if (entry.tag() == TAG_EXIF_IFD) {
+                exifIfd[0] = tiff.intValue(entry);
+            }
+        });
+        if (exifIfd[0] <= 0) {
+            return;
+        }
+        tiff.forEachEntry(exifIfd[0], entry -> {
+            if (entry.tag() == TAG_PIXEL_X_DIMENSION) {
+                putInt(tiff, data, entry, width);
+            } else if (entry.tag() == TAG_PIXEL_Y_DIMENSION) {
+                putInt(tiff, data, entry, height);
+            }
+        });
+    }
+
+    private static void putInt(TiffReader tiff, byte[] data, TiffReader.Entry entry, int value) {
+        if (entry.count() != 1) {
+            return;
+        }
+        if (entry.type() == TiffReader.TYPE_SHORT && value <= 0xFFFF) {
+            put(tiff, data, entry.valueOffset(), value, 2);
+        } else if (entry.type() == TiffReader.TYPE_LONG) {
+            put(tiff, data, entry.valueOffset(), value, 4);
+        }
+    }
+
+    private static void put(TiffReader tiff, byte[] data, int offset, int value, int size) {
+        if (!tiff.contains(offset, size)) {
+            return;
+        }
+        int position = tiff.base() + offset;
+        for (int i = 0; i < size; i++) {
+            int shift = tiff.isLittleEndian() ? 8 * i : 8 * (size - 1 - i);
+            data[position + i] = (byte) (value >> shift);
+        }
+    }
+
+    private static void replace(Path file, byte[] data) throws IOException {
+        Path temp = file.resolveSibling("." + file.getFileName() + ".crop.tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.time.ZoneOffset;
+
+public record ImageFeatures(long hash, byte[] histogram, int captureHour, int camera) {
+    public static final int HISTOGRAM_BINS = 16;
+    public static final int HISTOGRAM_SCALE = 127;
+    public static final int UNKNOWN_HOUR = Integer.MIN_VALUE;
+    private static final int HUE_BINS = 12;
+    private static final int GRAY_BINS = HISTOGRAM_BINS - HUE_BINS;
+    private static final int DECODE_SIZE = 64;
+    private static final int SAMPLE_SIZE = 32;
+
+    public static ImageFeatures read(File file) {
+        try {
+            BufferedImage image = EmbeddedThumbnailReader.read(file);
+            if (image == null) {
+                PreviewDecoder.Result decoded = PreviewDecoder.decode(file, DECODE_SIZE, DECODE_SIZE);
+                image = decoded != null ? decoded.image() : null;
+            }
+            return image != null ? of(image, ImageMetadataReader.read(file)) : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    public static ImageFeatures of(BufferedImage image, ImageMetadataReader.Metadata metadata) {
+        int captureHour = UNKNOWN_HOUR;
+        int camera = 0;
+        if (metadata != null) {
+            if (metadata.captureDate() != null) {
+                captureHour = (int) (metadata.captureDate().toEpochSecond(ZoneOffset.UTC) / 3600);
+            }
+            if (metadata.cameraModel() != null) {
+                camera = metadata.cameraModel().trim().hashCode();
+            }
+        }
+        return new ImageFeatures(DuplicateDetector.differenceHash(image), histogram(image), captureHour, camera);
+    }
+
+    static byte[] histogram(BufferedImage image) {
+        BufferedImage sample = ImageScaler.scale(image, Math.min(SAMPLE_SIZE, image.getWidth()), Math.min(SAMPLE_SIZE, image.getHeight()),
+                ImageScaler.Quality.FAST);
+        int width = sample.getWidth();
+        int height = sample.getHeight();
+        int[] pixels = sample.getRGB(0, 0, width, height, null, 0, width);
+        int[] counts = new int[HISTOGRAM_BINS];
+        for (int pixel : pixels) {
+            int red = (pixel >> 16) & 0xFF;
+            int green = (pixel >> 8) & 0xFF;
+            int blue = pixel & 0xFF;
+            int max = Math.max(red, Math.max(green, blue));
+            int min = Math.min(red, Math.min(green, blue));
+            int chroma = max - min;
+            if (max < 32 || chroma * 5 < max) {
+                counts[HUE_BINS + Math.min(GRAY_BINS - 1, (red * 299 + green * 587 + blue * 114) / 1000 * GRAY_BINS / 256)]++;
+                continue;
+            }
+            float hue;
+            if (max == red) {
+                hue = (float) (green - blue) / chroma;
+            } else if (max == green) {
+                hue = 2 + (float) (blue - red) / chroma;
+            } else {
+                hue = 4 + (float) (red - green) / chroma;
+            }
+            int bin = (int) Math.floor((hue + 6) % 6 * HUE_BINS / 6);
+            counts[Math.min(HUE_BINS - 1, bin)]++;
+        }
+        byte[] histogram = new byte[HISTOGRAM_BINS];
+        for (int i = 0; i < HISTOGRAM_BINS; i++) {
+            histogram[i] = (byte) Math.round((float) HISTOGRAM_SCALE * counts[i] / pixels.length);
+        }
+        return histogram;
+    }
+}
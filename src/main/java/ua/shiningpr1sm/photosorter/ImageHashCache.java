@@ -0,0 +1,102 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ImageHashCache {
+    private static final int MAGIC = 0x50534448;
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    private record Entry(long size, long lastModified, long hash) {
+    }
+
+    private ImageHashCache(Path file) {
+        this.file = file;
+    }
+
+    public static ImageHashCache open(Path configDirectory, File folder) {
+        Path file = configDirectory.resolve("index")
+                .resolve(Integer.toHexString(folder.getAbsolutePath().hashCode()) + "-" + folder.getName().replaceAll("[^A-Za-z0-9_-]", "_") + ".hashes");
+        ImageHashCache cache = new ImageHashCache(file);
+        try {
+            Files.createDirectories(file.getParent());
+            cache.load();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not load image hashes for " + folder.getAbsolutePath() + ": " + e.getMessage());
+            cache.entries.clear();
+        }
+        return cache;
+    }
+
+    public Long lookup(File image, long size, long lastModified) {
+        Entry entry = entries.get(image.getAbsolutePath());
+        return entry != null && entry.size() == size && entry.lastModified() == lastModified ? entry.hash() : null;
+    }
+
+    public void put(File image, long size, long lastModified, long hash) {
+        entries.put(image.getAbsolutePath(), new Entry(size, lastModified, hash));
+        dirty = true;
+    }
+
+    public void retainOnly(Set<String> paths) {
+        if (entries.keySet().retainAll(paths)) {
+            dirty = true;
+        }
+    }
+
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Map<String, Entry> snapshot = Map.copyOf(entries);
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> item : snapshot.entrySet()) {
+                    output.writeUTF(item.getKey());
+                    output.writeLong(item.getValue().size());
+                    output.writeLong(item.getValue().lastModified());
+                    output.writeLong(item.getValue().hash());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            System.err.println("Could not save image hashes " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void load() throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Unsupported image hash format: " + file);
+            }
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = input.readUTF();
+                entries.put(path, new Entry(input.readLong(), input.readLong(), input.readLong()));
+            }
+        }
+    }
+}
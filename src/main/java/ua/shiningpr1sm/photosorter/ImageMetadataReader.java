@@ -0,0 +1,200 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+public final class ImageMetadataReader {
+    private static final int TAG_MAKE = 0x010F;
+    private static final int TAG_MODEL = 0x0110;
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_DATE_TIME = 0x0132;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+    private static final int MAX_JPEG_SEGMENTS = 64;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final DateTimeFormatter EXIF_DATE = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+    public record Metadata(LocalDateTime captureDate, String cameraModel, int width, int height, int orientation) {
+        public int displayWidth() {
+            return ImageScaler.swapsAxes(orientation) ? height : width;
+        }
+
+        public int displayHeight() {
+            return ImageScaler.swapsAxes(orientation) ? width : height;
+        }
+    }
+
+    private static final class Fields {
+        private String make;
+        private String model;
+        private String dateTime;
+        private String dateTimeOriginal;
+        private int width = -1;
+        private int height = -1;
+        private int orientation = 1;
+
+        private Metadata toMetadata() {
+            LocalDateTime captureDate = parseDate(dateTimeOriginal);
+            return new Metadata(captureDate != null ? captureDate : parseDate(dateTime), cameraModel(), width, height, orientation);
+        }
+
+        private String cameraModel() {
+            if (model == null || model.isEmpty()) {
+                return make;
+            }
+            if (make == null || make.isEmpty() || model.toLowerCase(Locale.ROOT).startsWith(make.toLowerCase(Locale.ROOT))) {
+                return model;
+            }
+            return make + " " + model;
+        }
+    }
+
+    private ImageMetadataReader() {
+    }
+
+    public static Metadata read(File file) {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            byte[] header = new byte[(int) Math.min(EmbeddedThumbnailReader.HEADER_BYTES, input.length())];
+            input.readFully(header);
+            Fields fields = new Fields();
+            if (JpegSegments.isJpeg(header, header.length)) {
+                parseJpeg(header, header.length, fields);
+                if (fields.width < 0) {
+                    readJpegFrameSize(input, fields);
+                }
+            } else if (isPng(header, header.length)) {
+                parsePng(header, header.length, fields);
+            } else {
+                return null;
+            }
+            return fields.toMetadata();
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void parseJpeg(byte[] header, int length, Fields fields) {
+        boolean[] exifSeen = {false};
+        JpegSegments.walk(header, length, (marker, dataOffset, dataLength) -> {
+            if (marker == JpegSegments.APP1 && !exifSeen[0] && JpegSegments.startsWith(header, dataOffset, dataLength, "Exif\0\0")) {
+                exifSeen[0] = true;
+                parseTiff(TiffReader.open(header, dataOffset + 6, dataOffset + dataLength), fields);
+            } else if (JpegSegments.isStartOfFrame(marker) && dataLength >= 5) {
+                fields.height = u16(header, dataOffset + 1);
+                fields.width = u16(header, dataOffset + 3);
+                return false;
+            }
+            return true;
+        });
+    }
+
+    private static void readJpegFrameSize(RandomAccessFile input, Fields fields) throws IOException {
+        byte[] buffer = new byte[9];
+        long position = 2;
+        for (int segment = 0; segment < MAX_JPEG_SEGMENTS && position + 4 <= input.length(); segment++) {
+            input.seek(position);
+            input.readFully(buffer, 0, 4);
+            if ((buffer[0] & 0xFF) != 0xFF) {
+                return;
+            }
+            int marker = buffer[1] & 0xFF;
+            if (marker == 0xFF) {
+                position++;
+                continue;
+            }
+            if (marker == JpegSegments.SOS || marker == JpegSegments.EOI) {
+                return;
+            }
+            if (JpegSegments.isStartOfFrame(marker)) {
+                input.readFully(buffer, 4, 5);
+                fields.height = u16(buffer, 5);
+                fields.width = u16(buffer, 7);
+                return;
+            }
+            position += 2 + u16(buffer, 2);
+        }
+    }
+
+    private static void parsePng(byte[] header, int length, Fields fields) {
+        int position = PNG_SIGNATURE.length;
+        while (position + 8 <= length) {
+            long chunkLength = u32(header, position);
+            String type = new String(header, position + 4, 4, StandardCharsets.US_ASCII);
+            int dataOffset = position + 8;
+            if (type.equals("IHDR") && dataOffset + 8 <= length) {
+                fields.width = (int) Math.min(Integer.MAX_VALUE, u32(header, dataOffset));
+                fields.height = (int) Math.min(Integer.MAX_VALUE, u32(header, dataOffset + 4));
+            } else if (type.equals("eXIf") && dataOffset + chunkLength <= length) {
+                parseTiff(TiffReader.open(header, dataOffset, dataOffset + (int) chunkLength), fields);
+            } else if (type.equals("IDAT") || type.equals("IEND")) {
+                return;
+            }
+            position = (int) Math.min(Integer.MAX_VALUE, dataOffset + chunkLength + 4);
+        }
+    }
+
+    private static void parseTiff(TiffReader tiff, Fields fields) {
+        if (tiff == null) {
+            return;
+        }
+        int[] exifIfd = {-1};
+        tiff.forEachEntry(tiff.firstIfdOffset(), entry -> {
+            switch (entry.tag()) {
+                case TAG_MAKE -> fields.make = tiff.asciiValue(entry);
+                case TAG_MODEL -> fields.model = tiff.asciiValue(entry);
+                case TAG_DATE_TIME -> fields.dateTime = tiff.asciiValue(entry);
+                case TAG_EXIF_IFD -> exifIfd[0] = tiff.intValue(entry);
+                case TAG_ORIENTATION -> {
+                    int orientation = tiff.intValue(entry);
+                    fields.orientation = orientation >= 1 && orientation <= 8 ? orientation : 1;
+                }
+                default -> {
+                }
+            }
+        });
+        if (exifIfd[0] > 0) {
+            tiff.forEachEntry(exifIfd[0], entry -> {
+                if (entry.tag() == TAG_DATE_TIME_ORIGINAL) {
+                    fields.dateTimeOriginal = tiff.asciiValue(entry);
+                }
+            });
+        }
+    }
+
+    private static boolean isPng(byte[] data, int length) {
+        if (length < PNG_SIGNATURE.length) {
+            return false;
+        }
+        for (int i = 0; i < PNG_SIGNATURE.length; i++) {
+            if (data[i] != PNG_SIGNATURE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static LocalDateTime parseDate(String value) {
+        if (value == null || value.length() < 19) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value.substring(0, 19), EXIF_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static int u16(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private static long u32(byte[] data, int offset) {
+        return (data[offset] & 0xFFL) << 24 | (data[offset + 1] & 0xFFL) << 16 | (data[offset + 2] & 0xFFL) << 8 | (data[offset + 3] & 0xFFL);
+    }
+}
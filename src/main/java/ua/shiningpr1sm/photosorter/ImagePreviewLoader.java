@@ -0,0 +1,193 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ImagePreviewLoader {
+    private static final int FOREGROUND_PRIORITY = -1;
+    private static final int LISTENER_BACKLOG = 4;
+
+    private final ImageCache<PreviewKey> cache;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor listenerExecutor;
+    private final Map<PreviewKey, CompletableFuture<BufferedImage>> pending = new ConcurrentHashMap<>();
+    private final Map<PreviewKey, PreviewTask> queuedTasks = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile PreviewKey foregroundKey;
+    private volatile DecodeListener decodeListener;
+
+    public interface DecodeListener {
+        void decoded(File file, PreviewDecoder.Result decoded, BufferedImage preview);
+    }
+
+    public record PreviewKey(String path, long lastModified, int width, int height) {
+        public static PreviewKey of(File file, int width, int height) {
+            return new PreviewKey(file.getAbsolutePath(), file.lastModified(), width, height);
+        }
+    }
+
+    public ImagePreviewLoader(int threads, long cacheBytes) {
+        this.cache = new ImageCache<>(cacheBytes);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "preview-loader-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        this.listenerExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(LISTENER_BACKLOG), runnable -> {
+            Thread thread = new Thread(runnable, "preview-decode-listener");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardOldestPolicy());
+    }
+
+    public void setDecodeListener(DecodeListener decodeListener) {
+        this.decodeListener = decodeListener;
+    }
+
+    public BufferedImage getCached(File file, int maxWidth, int maxHeight) {
+        return cache.get(PreviewKey.of(file, maxWidth, maxHeight));
+    }
+
+    public CompletableFuture<BufferedImage> load(File file, int maxWidth, int maxHeight) {
+        foregroundKey = PreviewKey.of(file, maxWidth, maxHeight);
+        return submit(file, maxWidth, maxHeight, FOREGROUND_PRIORITY);
+    }
+
+    public void prefetch(List<File> files, int maxWidth, int maxHeight) {
+        Set<PreviewKey> wanted = new HashSet<>();
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            if (Objects.isNull(file) || !file.isFile()) {
+                continue;
+            }
+            PreviewKey key = PreviewKey.of(file, maxWidth, maxHeight);
+            wanted.add(key);
+            submit(file, maxWidth, maxHeight, i);
+        }
+        queuedTasks.forEach((key, task) -> {
+            if (!wanted.contains(key) && !key.equals(foregroundKey) && executor.remove(task)) {
+                queuedTasks.remove(key, task);
+                pending.remove(key, task.future);
+                task.future.cancel(false);
+            }
+        });
+    }
+
+    public void invalidate(File file) {
+        String path = file.getAbsolutePath();
+        cache.removeIf(key -> key.path().equals(path));
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        listenerExecutor.shutdownNow();
+        pending.clear();
+        queuedTasks.clear();
+        cache.clear();
+    }
+
+    private CompletableFuture<BufferedImage> submit(File file, int maxWidth, int maxHeight, int priority) {
+        PreviewKey key = PreviewKey.of(file, maxWidth, maxHeight);
+        BufferedImage cached = cache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<BufferedImage> existing = pending.get(key);
+        if (existing != null) {
+            PreviewTask queued = queuedTasks.get(key);
+            if (priority == FOREGROUND_PRIORITY && queued != null && queued.priority != FOREGROUND_PRIORITY && executor.remove(queued)) {
+                PreviewTask promoted = new PreviewTask(queued.file, key, queued.future, priority, sequence.incrementAndGet());
+                queuedTasks.replace(key, queued, promoted);
+                executor.execute(promoted);
+            }
+            return existing;
+        }
+        CompletableFuture<BufferedImage> future = new CompletableFuture<>();
+        CompletableFuture<BufferedImage> raced = pending.putIfAbsent(key, future);
+        if (raced != null) {
+            return raced;
+        }
+        PreviewTask task = new PreviewTask(file, key, future, priority, sequence.incrementAndGet());
+        queuedTasks.put(key, task);
+        executor.execute(task);
+        return future;
+    }
+
+    private Decoded decodeAndScale(File file, int maxWidth, int maxHeight) throws IOException {
+        ImageMetadataReader.Metadata metadata = ImageMetadataReader.read(file);
+        int orientation = metadata != null ? metadata.orientation() : 1;
+        boolean swapsAxes = ImageScaler.swapsAxes(orientation);
+        PreviewDecoder.Result decoded = PreviewDecoder.decode(file, swapsAxes ? maxHeight : maxWidth, swapsAxes ? maxWidth : maxHeight);
+        BufferedImage preview = ImageScaler.scaleToFit(decoded.image(), maxWidth, maxHeight, ImageScaler.Quality.BALANCED, orientation);
+        return new Decoded(decoded, preview);
+    }
+
+    private void notifyDecoded(File file, Decoded decoded) {
+        DecodeListener listener = decodeListener;
+        if (listener != null) {
+            listenerExecutor.execute(() -> listener.decoded(file, decoded.source(), decoded.preview()));
+        }
+    }
+
+    private record Decoded(PreviewDecoder.Result source, BufferedImage preview) {
+    }
+
+    private final class PreviewTask implements Runnable, Comparable<PreviewTask> {
+        private final File file;
+        private final PreviewKey key;
+        private final CompletableFuture<BufferedImage> future;
+        private final int priority;
+        private final long order;
+
+        private PreviewTask(File file, PreviewKey key, CompletableFuture<BufferedImage> future, int priority, long order) {
+            this.file = file;
+            this.key = key;
+            this.future = future;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            queuedTasks.remove(key, this);
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                Decoded decoded = decodeAndScale(file, key.width(), key.height());
+                cache.put(key, decoded.preview());
+                future.complete(decoded.preview());
+                notifyDecoded(file, decoded);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                pending.remove(key, future);
+            }
+        }
+
+        @Override
+        public int compareTo(PreviewTask other) {
+            int byPriority = Integer.compare(priority, other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(order, other.order);
+        }
+    }
+}
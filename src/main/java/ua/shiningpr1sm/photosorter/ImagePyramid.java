@@ -0,0 +1,83 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImagePyramid implements TileSource {
+    private final List<BufferedImage> levels = new ArrayList<>();
+    private final List<BufferedImage[][]> tiles = new ArrayList<>();
+
+    public ImagePyramid(BufferedImage image) {
+        BufferedImage level = ImageScaler.scale(image, image.getWidth(), image.getHeight(), ImageScaler.Quality.FAST);
+        while (true) {
+            levels.add(level);
+            tiles.add(new BufferedImage[columns(level.getWidth())][columns(level.getHeight())]);
+            if (level.getWidth() <= TILE_SIZE && level.getHeight() <= TILE_SIZE) {
+                break;
+            }
+            level = ImageScaler.scale(level, Math.max(1, (level.getWidth() + 1) / 2), Math.max(1, (level.getHeight() + 1) / 2),
+                    ImageScaler.Quality.BALANCED);
+        }
+    }
+
+    public static ImagePyramid decode(File file, long maxPixels) throws IOException {
+        ImageMetadataReader.Metadata metadata = ImageMetadataReader.read(file);
+        int orientation = metadata != null ? metadata.orientation() : 1;
+        BufferedImage image = PreviewDecoder.decodeWithin(file, maxPixels).image();
+        if (orientation > 1) {
+            boolean swapsAxes = ImageScaler.swapsAxes(orientation);
+            image = ImageScaler.scale(image, swapsAxes ? image.getHeight() : image.getWidth(),
+                    swapsAxes ? image.getWidth() : image.getHeight(), ImageScaler.Quality.FAST, orientation);
+        }
+        return new ImagePyramid(image);
+    }
+
+    @Override
+    public int getWidth() {
+        return levels.get(0).getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return levels.get(0).getHeight();
+    }
+
+    @Override
+    public int getLevelCount() {
+        return levels.size();
+    }
+
+    @Override
+    public int getLevelWidth(int level) {
+        return levels.get(level).getWidth();
+    }
+
+    @Override
+    public int getLevelHeight(int level) {
+        return levels.get(level).getHeight();
+    }
+
+    @Override
+    public BufferedImage getTile(int level, int column, int row) {
+        BufferedImage[][] levelTiles = tiles.get(level);
+        if (column < 0 || row < 0 || column >= levelTiles.length || row >= levelTiles[column].length) {
+            return null;
+        }
+        BufferedImage tile = levelTiles[column][row];
+        if (tile == null) {
+            BufferedImage image = levels.get(level);
+            int x = column * TILE_SIZE;
+            int y = row * TILE_SIZE;
+            tile = image.getSubimage(x, y, Math.min(TILE_SIZE, image.getWidth() - x), Math.min(TILE_SIZE, image.getHeight() - y));
+            levelTiles[column][row] = tile;
+        }
+        return tile;
+    }
+
+    private static int columns(int size) {
+        return (size + TILE_SIZE - 1) / TILE_SIZE;
+    }
+}
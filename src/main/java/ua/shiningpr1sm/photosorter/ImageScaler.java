@@ -0,0 +1,150 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+public final class ImageScaler {
+
+    public enum Quality {
+        FAST(RenderingHints.VALUE_INTERPOLATION_BILINEAR, false),
+        BALANCED(RenderingHints.VALUE_INTERPOLATION_BILINEAR, true),
+        HIGH(RenderingHints.VALUE_INTERPOLATION_BICUBIC, true);
+
+        private final Object interpolation;
+        private final boolean progressive;
+
+        Quality(Object interpolation, boolean progressive) {
+            this.interpolation = interpolation;
+            this.progressive = progressive;
+        }
+    }
+
+    private ImageScaler() {
+    }
+
+    public static BufferedImage scaleToFit(BufferedImage source, int maxWidth, int maxHeight, Quality quality) {
+        return scaleToFit(source, maxWidth, maxHeight, quality, 1);
+    }
+
+    public static BufferedImage scaleToFit(BufferedImage source, int maxWidth, int maxHeight, Quality quality, int orientation) {
+        int sourceWidth = swapsAxes(orientation) ? source.getHeight() : source.getWidth();
+        int sourceHeight = swapsAxes(orientation) ? source.getWidth() : source.getHeight();
+        double ratio = Math.min((double) maxWidth / sourceWidth, (double) maxHeight / sourceHeight);
+        int width = Math.max(1, (int) (sourceWidth * ratio));
+        int height = Math.max(1, (int) (sourceHeight * ratio));
+        return scale(source, width, height, quality, orientation);
+    }
+
+    public static BufferedImage scale(BufferedImage source, int width, int height, Quality quality) {
+        return scale(source, width, height, quality, 1);
+    }
+
+    public static BufferedImage scale(BufferedImage source, int width, int height, Quality quality, int orientation) {
+        long start = System.nanoTime();
+        BufferedImage scaled = resize(source, width, height, quality, orientation);
+        if (scaled != source) {
+            Metrics.record(Metrics.Stage.SCALE, start, true);
+        }
+        return scaled;
+    }
+
+    private static BufferedImage resize(BufferedImage source, int width, int height, Quality quality, int orientation) {
+        boolean alpha = source.getColorModel().hasAlpha();
+        int storedWidth = swapsAxes(orientation) ? height : width;
+        int storedHeight = swapsAxes(orientation) ? width : height;
+        if (storedWidth == source.getWidth() && storedHeight == source.getHeight()) {
+            return isCompatible(source) && orientation <= 1 ? source : draw(source, width, height, alpha, quality.interpolation, orientation);
+        }
+        BufferedImage current = source;
+        if (quality.progressive) {
+            int currentWidth = source.getWidth();
+            int currentHeight = source.getHeight();
+            while (currentWidth / 2 >= storedWidth && currentHeight / 2 >= storedHeight) {
+                currentWidth /= 2;
+                currentHeight /= 2;
+                current = draw(current, currentWidth, currentHeight, alpha, RenderingHints.VALUE_INTERPOLATION_BILINEAR, 1);
+            }
+        }
+        if (current.getWidth() == storedWidth && current.getHeight() == storedHeight && orientation <= 1) {
+            return current;
+        }
+        return draw(current, width, height, alpha, quality.interpolation, orientation);
+    }
+
+    public static boolean swapsAxes(int orientation) {
+        return orientation >= 5 && orientation <= 8;
+    }
+
+    public static Rectangle toStoredRegion(Rectangle displayed, int orientation, int storedWidth, int storedHeight) {
+        int x0 = displayed.x;
+        int y0 = displayed.y;
+        int x1 = displayed.x + displayed.width;
+        int y1 = displayed.y + displayed.height;
+        Rectangle stored = switch (orientation) {
+            case 2 -> new Rectangle(storedWidth - x1, y0, x1 - x0, y1 - y0);
+            case 3 -> new Rectangle(storedWidth - x1, storedHeight - y1, x1 - x0, y1 - y0);
+            case 4 -> new Rectangle(x0, storedHeight - y1, x1 - x0, y1 - y0);
+            case 5 -> new Rectangle(y0, x0, y1 - y0, x1 - x0);
+            case 6 -> new Rectangle(y0, storedHeight - x1, y1 - y0, x1 - x0);
+            case 7 -> new Rectangle(storedWidth - y1, storedHeight - x1, y1 - y0, x1 - x0);
+            case 8 -> new Rectangle(storedWidth - y1, x0, y1 - y0, x1 - x0);
+            default -> new Rectangle(displayed);
+        };
+        return stored.intersection(new Rectangle(0, 0, storedWidth, storedHeight));
+    }
+
+    static AffineTransform orientationTransform(int orientation, int width, int height) {
+        return switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, width, 0);
+            case 3 -> new AffineTransform(-1, 0, 0, -1, width, height);
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, height);
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> new AffineTransform(0, 1, -1, 0, width, 0);
+            case 7 -> new AffineTransform(0, -1, -1, 0, width, height);
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, height);
+            default -> new AffineTransform();
+        };
+    }
+
+    public static BufferedImage createCompatibleImage(int width, int height, boolean alpha) {
+        GraphicsConfiguration configuration = defaultConfiguration();
+        if (configuration == null) {
+            return new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        }
+        return configuration.createCompatibleImage(width, height, alpha ? Transparency.TRANSLUCENT : Transparency.OPAQUE);
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height, boolean alpha, Object interpolation, int orientation) {
+        BufferedImage target = createCompatibleImage(width, height, alpha);
+        Graphics2D g2d = target.createGraphics();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2d.transform(orientationTransform(orientation, width, height));
+            if (swapsAxes(orientation)) {
+                g2d.drawImage(source, 0, 0, height, width, null);
+            } else {
+                g2d.drawImage(source, 0, 0, width, height, null);
+            }
+        } finally {
+            g2d.dispose();
+        }
+        return target;
+    }
+
+    private static boolean isCompatible(BufferedImage image) {
+        GraphicsConfiguration configuration = defaultConfiguration();
+        if (configuration == null) {
+            return image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB;
+        }
+        return image.getColorModel().equals(configuration.getColorModel(image.getColorModel().getTransparency()));
+    }
+
+    private static GraphicsConfiguration defaultConfiguration() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return null;
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+    }
+}
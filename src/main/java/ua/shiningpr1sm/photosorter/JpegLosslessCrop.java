@@ -0,0 +1,499 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+final class JpegLosslessCrop {
+    private static final int SOF0 = 0xC0;
+    private static final int SOF1 = 0xC1;
+    private static final int DHT = 0xC4;
+    private static final int DQT = 0xDB;
+    private static final int DRI = 0xDD;
+    private static final int LOOKAHEAD_BITS = 9;
+    private static final int[] STANDARD_DC_BITS = {0, 1, 5, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 0};
+    private static final int[] STANDARD_DC_VALUES = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+
+    record Result(byte[] data, Rectangle region) {
+    }
+
+    private record Component(int id, int horizontal, int vertical) {
+    }
+
+    private JpegLosslessCrop() {
+    }
+
+    static Result crop(byte[] data, Rectangle requested) throws IOException {
+        if (!JpegSegments.isJpeg(data, data.length)) {
+            return null;
+        }
+        ByteArrayOutputStream header = new ByteArrayOutputStream(64 * 1024);
+        header.write(0xFF);
+        header.write(0xD8);
+        HuffmanTable[][] tables = new HuffmanTable[2][4];
+        Component[] components = null;
+        int frameWidth = 0;
+        int frameHeight = 0;
+        int restartInterval = 0;
+        int sofStart = -1;
+        int position = 2;
+        while (true) {
+            if (position + 4 > data.length || (data[position] & 0xFF) != 0xFF) {
+                throw new IOException("Malformed JPEG segment at offset " + position);
+            }
+            int marker = data[position + 1] & 0xFF;
+            if (marker == 0xFF) {
+                position++;
+                continue;
+            }
+            int length = u16(data, position + 2);
+            int dataOffset = position + 4;
+            int end = position + 2 + length;
+            if (length < 2 || end > data.length) {
+                throw new IOException("Truncated JPEG segment at offset " + position);
+            }
+            if (marker == JpegSegments.SOS) {
+                if (components == null) {
+                    return null;
+                }
+                return cropScan(data, dataOffset, end, header, tables, components, frameWidth, frameHeight, sofStart,
+                        restartInterval, requested);
+            }
+            if (marker == JpegSegments.EOI) {
+                return null;
+            }
+            if (JpegSegments.isStartOfFrame(marker)) {
+                if (marker != SOF0 && marker != SOF1 || data[dataOffset] != 8) {
+                    return null;
+                }
+                frameHeight = u16(data, dataOffset + 1);
+                frameWidth = u16(data, dataOffset + 3);
+                int count = data[dataOffset + 5] & 0xFF;
+                if (frameWidth == 0 || frameHeight == 0 || count == 0 || 6 + count * 3 > length - 2) {
+                    return null;
+                }
+                components = new Component[count];
+                for (int i = 0; i < count; i++) {
+                    int offset = dataOffset + 6 + i * 3;
+                    int sampling = data[offset + 1] & 0xFF;
+                    components[i] = new Component(data[offset] & 0xFF, sampling >> 4, sampling & 0x0F);
+                }
+                sofStart = header.size();
+                header.write(data, position, end - position);
+            } else if (marker == DHT) {
+                readHuffmanTables(data, dataOffset, end, tables);
+            } else if (marker == DRI) {
+                restartInterval = u16(data, dataOffset);
+            } else if (marker == JpegSegments.APP2 && JpegSegments.startsWith(data, dataOffset, length - 2, "MPF\0")) {
+                // The secondary images it points at are not carried over.
+            } else if (marker == DQT || marker >= 0xE0 && marker <= 0xEF || marker == 0xFE) {
+                header.write(data, position, end - position);
+            } else {
+                return null;
+            }
+            position = end;
+        }
+    }
+
+    private static Result cropScan(byte[] data, int sosOffset, int sosEnd, ByteArrayOutputStream header, HuffmanTable[][] tables,
+                                   Component[] components, int frameWidth, int frameHeight, int sofStart, int restartInterval,
+                                   Rectangle requested) throws IOException {
+        int scanCount = data[sosOffset] & 0xFF;
+        if (scanCount != components.length || sosEnd - sosOffset != 4 + scanCount * 2) {
+            return null;
+        }
+        int spectralStart = data[sosEnd - 3] & 0xFF;
+        int spectralEnd = data[sosEnd - 2] & 0xFF;
+        int approximation = data[sosEnd - 1] & 0xFF;
+        if (spectralStart != 0 || spectralEnd != 63 || approximation != 0) {
+            return null;
+        }
+        int count = components.length;
+        int[] horizontal = new int[count];
+        int[] vertical = new int[count];
+        HuffmanTable[] dcTables = new HuffmanTable[count];
+        HuffmanTable[] acTables = new HuffmanTable[count];
+        int maxHorizontal = 1;
+        int maxVertical = 1;
+        for (int i = 0; i < count; i++) {
+            int selector = sosOffset + 1 + i * 2;
+            Component component = findComponent(components, data[selector] & 0xFF);
+            if (component == null) {
+                return null;
+            }
+            horizontal[i] = count == 1 ? 1 : component.horizontal;
+            vertical[i] = count == 1 ? 1 : component.vertical;
+            if (horizontal[i] < 1 || horizontal[i] > 4 || vertical[i] < 1 || vertical[i] > 4) {
+                return null;
+            }
+            maxHorizontal = Math.max(maxHorizontal, horizontal[i]);
+            maxVertical = Math.max(maxVertical, vertical[i]);
+            int tableSelector = data[selector + 1] & 0xFF;
+            dcTables[i] = tables[0][(tableSelector >> 4) & 3];
+            acTables[i] = tables[1][tableSelector & 3];
+            if (dcTables[i] == null || acTables[i] == null) {
+                return null;
+            }
+        }
+        int mcuWidth = 8 * maxHorizontal;
+        int mcuHeight = 8 * maxVertical;
+        int mcusPerRow = (frameWidth + mcuWidth - 1) / mcuWidth;
+        Rectangle bounds = requested.intersection(new Rectangle(0, 0, frameWidth, frameHeight));
+        if (bounds.isEmpty()) {
+            return null;
+        }
+        int left = bounds.x / mcuWidth * mcuWidth;
+        int top = bounds.y / mcuHeight * mcuHeight;
+        Rectangle region = new Rectangle(left, top, bounds.x + bounds.width - left, bounds.y + bounds.height - top);
+        int firstColumn = left / mcuWidth;
+        int firstRow = top / mcuHeight;
+        int columns = (region.width + mcuWidth - 1) / mcuWidth;
+        int rows = (region.height + mcuHeight - 1) / mcuHeight;
+
+        byte[] headerBytes = header.toByteArray();
+        int sofData = sofStart + 4;
+        headerBytes[sofData + 1] = (byte) (region.height >> 8);
+        headerBytes[sofData + 2] = (byte) region.height;
+        headerBytes[sofData + 3] = (byte) (region.width >> 8);
+        headerBytes[sofData + 4] = (byte) region.width;
+        BitWriter output = new BitWriter(headerBytes.length + data.length / 2);
+        output.bytes.write(headerBytes, 0, headerBytes.length);
+        HuffmanTable dcOut = new HuffmanTable(0, 0, STANDARD_DC_BITS, STANDARD_DC_VALUES);
+        writeHuffmanTables(output.bytes, dcOut, acTables);
+        output.bytes.write(0xFF);
+        output.bytes.write(JpegSegments.SOS);
+        output.bytes.write(0);
+        output.bytes.write(6 + count * 2);
+        output.bytes.write(count);
+        for (int i = 0; i < count; i++) {
+            int selector = sosOffset + 1 + i * 2;
+            output.bytes.write(data[selector]);
+            output.bytes.write(acTables[i].id);
+        }
+        output.bytes.write(0);
+        output.bytes.write(63);
+        output.bytes.write(0);
+
+        BitReader input = new BitReader(data, sosEnd);
+        int[] predictions = new int[count];
+        int[] outputPredictions = new int[count];
+        int firstWanted = firstRow * mcusPerRow + firstColumn;
+        int lastWanted = (firstRow + rows - 1) * mcusPerRow + firstColumn + columns - 1;
+        for (int mcu = 0; mcu <= lastWanted; mcu++) {
+            if (restartInterval > 0 && mcu > 0 && mcu % restartInterval == 0) {
+                input.restart();
+                Arrays.fill(predictions, 0);
+                if (mcu + restartInterval <= firstWanted) {
+                    mcu += restartInterval - 1;
+                    continue;
+                }
+            }
+            int row = mcu / mcusPerRow;
+            int column = mcu % mcusPerRow;
+            boolean wanted = row >= firstRow && column >= firstColumn && column < firstColumn + columns;
+            for (int i = 0; i < count; i++) {
+                int blocks = horizontal[i] * vertical[i];
+                for (int block = 0; block < blocks; block++) {
+                    predictions[i] += decodeDc(input, dcTables[i]);
+                    if (wanted) {
+                        writeDc(output, dcOut, predictions[i] - outputPredictions[i]);
+                        outputPredictions[i] = predictions[i];
+                    }
+                    copyAc(input, acTables[i], wanted ? output : null);
+                }
+            }
+            if (input.overran()) {
+                throw new IOException("JPEG data ends before MCU " + mcu);
+            }
+        }
+        output.flush();
+        output.bytes.write(0xFF);
+        output.bytes.write(JpegSegments.EOI);
+        return new Result(output.bytes.toByteArray(), region);
+    }
+
+    private static int decodeDc(BitReader input, HuffmanTable table) throws IOException {
+        int size = table.decode(input);
+        if (size == 0) {
+            return 0;
+        }
+        if (size > 11) {
+            throw new IOException("Invalid DC coefficient size " + size);
+        }
+        return extend(input.read(size), size);
+    }
+
+    private static void writeDc(BitWriter output, HuffmanTable table, int difference) {
+        int magnitude = Math.abs(difference);
+        int size = magnitude == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(magnitude);
+        output.write(table.codes[size], table.lengths[size]);
+        if (size > 0) {
+            output.write(difference < 0 ? difference - 1 : difference, size);
+        }
+    }
+
+    private static void copyAc(BitReader input, HuffmanTable table, BitWriter output) throws IOException {
+        for (int k = 1; k < 64; k++) {
+            int symbol = table.decode(input);
+            int run = symbol >> 4;
+            int size = symbol & 0x0F;
+            if (output != null) {
+                output.write(table.codes[symbol], table.lengths[symbol]);
+            }
+            if (size == 0) {
+                if (run != 15) {
+                    return;
+                }
+                k += 15;
+                continue;
+            }
+            k += run;
+            int bits = input.read(size);
+            if (output != null) {
+                output.write(bits, size);
+            }
+        }
+    }
+
+    private static int extend(int value, int size) {
+        return value < 1 << (size - 1) ? value - (1 << size) + 1 : value;
+    }
+
+    private static Component findComponent(Component[] components, int id) {
+        for (Component component : components) {
+            if (component.id == id) {
+                return component;
+            }
+        }
+        return null;
+    }
+
+    private static void readHuffmanTables(byte[] data, int offset, int end, HuffmanTable[][] tables) throws IOException {
+        while (offset < end) {
+            int tableClass = (data[offset] & 0xFF) >> 4;
+            int id = data[offset] & 0x0F;
+            if (tableClass > 1 || id > 3 || offset + 17 > end) {
+                throw new IOException("Invalid Huffman table");
+            }
+            int[] bits = new int[16];
+            int total = 0;
+            for (int i = 0; i < 16; i++) {
+                bits[i] = data[offset + 1 + i] & 0xFF;
+                total += bits[i];
+            }
+            if (total > 256 || offset + 17 + total > end) {
+                throw new IOException("Invalid Huffman table");
+            }
+            int[] values = new int[total];
+            for (int i = 0; i < total; i++) {
+                values[i] = data[offset + 17 + i] & 0xFF;
+            }
+            tables[tableClass][id] = new HuffmanTable(tableClass, id, bits, values);
+            offset += 17 + total;
+        }
+    }
+
+    private static void writeHuffmanTables(ByteArrayOutputStream output, HuffmanTable dc, HuffmanTable[] acTables) {
+        ByteArrayOutputStream definitions = new ByteArrayOutputStream();
+        dc.writeDefinition(definitions);
+        boolean[] written = new boolean[4];
+        for (HuffmanTable table : acTables) {
+            if (!written[table.id]) {
+                written[table.id] = true;
+                table.writeDefinition(definitions);
+            }
+        }
+        output.write(0xFF);
+        output.write(DHT);
+        output.write((definitions.size() + 2) >> 8);
+        output.write(definitions.size() + 2);
+        output.write(definitions.toByteArray(), 0, definitions.size());
+    }
+
+    private static int u16(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private static final class HuffmanTable {
+        private final int tableClass;
+        private final int id;
+        private final int[] bits;
+        private final int[] values;
+        private final int[] lookup = new int[1 << LOOKAHEAD_BITS];
+        private final int[] maxCode = new int[18];
+        private final int[] valueOffset = new int[17];
+        private final int[] codes = new int[256];
+        private final int[] lengths = new int[256];
+
+        private HuffmanTable(int tableClass, int id, int[] bits, int[] values) throws IOException {
+            this.tableClass = tableClass;
+            this.id = id;
+            this.bits = bits;
+            this.values = values;
+            int code = 0;
+            int index = 0;
+            for (int length = 1; length <= 16; length++) {
+                valueOffset[length] = index - code;
+                for (int i = 0; i < bits[length - 1]; i++) {
+                    int symbol = values[index++];
+                    codes[symbol] = code;
+                    lengths[symbol] = length;
+                    if (length <= LOOKAHEAD_BITS) {
+                        int shift = LOOKAHEAD_BITS - length;
+                        for (int fill = 0; fill < 1 << shift; fill++) {
+                            lookup[(code << shift) | fill] = (length << 8) | symbol;
+                        }
+                    }
+                    code++;
+                }
+                if (code > 1 << length) {
+                    throw new IOException("Invalid Huffman table");
+                }
+                maxCode[length] = bits[length - 1] > 0 ? code - 1 : -1;
+                code <<= 1;
+            }
+            maxCode[17] = Integer.MAX_VALUE;
+        }
+
+        private int decode(BitReader input) throws IOException {
+            int entry = lookup[input.peek(LOOKAHEAD_BITS)];
+            if (entry != 0) {
+                input.skip(entry >> 8);
+                return entry & 0xFF;
+            }
+            int code = input.peek(LOOKAHEAD_BITS + 1);
+            int length = LOOKAHEAD_BITS + 1;
+            while (code > maxCode[length]) {
+                length++;
+                if (length > 16) {
+                    throw new IOException("Invalid Huffman code");
+                }
+                code = input.peek(length);
+            }
+            input.skip(length);
+            return values[valueOffset[length] + code];
+        }
+
+        private void writeDefinition(ByteArrayOutputStream output) {
+            output.write((tableClass << 4) | id);
+            for (int count : bits) {
+                output.write(count);
+            }
+            for (int value : values) {
+                output.write(value);
+            }
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] data;
+        private int position;
+        private long buffer;
+        private int bits;
+        private int paddingBits;
+        private boolean atMarker;
+
+        private BitReader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        private int peek(int count) {
+            if (bits < count) {
+                fill();
+            }
+            return (int) (buffer >>> (bits - count)) & ((1 << count) - 1);
+        }
+
+        private void skip(int count) {
+            bits -= count;
+        }
+
+        private int read(int count) {
+            int value = peek(count);
+            bits -= count;
+            return value;
+        }
+
+        private boolean overran() {
+            return bits < paddingBits;
+        }
+
+        private void fill() {
+            while (bits <= 56) {
+                int value = 0;
+                if (!atMarker && position < data.length) {
+                    value = data[position] & 0xFF;
+                    if (value != 0xFF) {
+                        position++;
+                    } else if (position + 1 < data.length && data[position + 1] == 0) {
+                        position += 2;
+                    } else {
+                        atMarker = true;
+                        value = 0;
+                    }
+                } else {
+                    atMarker = true;
+                }
+                if (atMarker) {
+                    paddingBits += 8;
+                }
+                buffer = (buffer << 8) | value;
+                bits += 8;
+            }
+        }
+
+        private void restart() throws IOException {
+            buffer = 0;
+            bits = 0;
+            paddingBits = 0;
+            atMarker = false;
+            while (position + 1 < data.length) {
+                if (data[position] != (byte) 0xFF) {
+                    position++;
+                    continue;
+                }
+                int next = data[position + 1] & 0xFF;
+                if (next >= 0xD0 && next <= 0xD7) {
+                    position += 2;
+                    return;
+                }
+                if (next != 0 && next != 0xFF) {
+                    throw new IOException("Missing JPEG restart marker");
+                }
+                position += next == 0 ? 2 : 1;
+            }
+            throw new IOException("Missing JPEG restart marker");
+        }
+    }
+
+    private static final class BitWriter {
+        private final ByteArrayOutputStream bytes;
+        private long buffer;
+        private int bits;
+
+        private BitWriter(int capacity) {
+            this.bytes = new ByteArrayOutputStream(capacity);
+        }
+
+        private void write(int value, int count) {
+            buffer = (buffer << count) | (value & ((1L << count) - 1));
+            bits += count;
+            while (bits >= 8) {
+                int next = (int) (buffer >>> (bits - 8)) & 0xFF;
+                bytes.write(next);
+                if (next == 0xFF) {
+                    bytes.write(0);
+                }
+                bits -= 8;
+            }
+        }
+
+        private void flush() {
+            if (bits > 0) {
+                write(0x7F, 8 - bits);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ua.shiningpr1sm.photosorter;
+
+final class JpegSegments {
+    static final int SOS = 0xDA;
+    static final int EOI = 0xD9;
+    static final int APP1 = 0xE1;
+    static final int APP2 = 0xE2;
+
+    interface SegmentVisitor {
+        boolean visit(int marker, int dataOffset, int dataLength);
+    }
+
+    private JpegSegments() {
+    }
+
+    static boolean isJpeg(byte[] data, int length) {
+        return length >= 2 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8;
+    }
+
+    static void walk(byte[] data, int length, SegmentVisitor visitor) {
+        if (!isJpeg(data, length)) {
+            return;
+        }
+        int position = 2;
+        while (position + 4 <= length) {
+            if ((data[position] & 0xFF) != 0xFF) {
+                return;
+            }
+            int marker = data[position + 1] & 0xFF;
+            if (marker == 0xFF) {
+                position++;
+                continue;
+            }
+            if (marker == EOI || marker == SOS) {
+                return;
+            }
+            int segmentLength = ((data[position + 2] & 0xFF) << 8) | (data[position + 3] & 0xFF);
+            if (segmentLength < 2) {
+                return;
+            }
+            int dataOffset = position + 4;
+            int dataLength = Math.min(segmentLength - 2, length - dataOffset);
+            if (!visitor.visit(marker, dataOffset, dataLength)) {
+                return;
+            }
+            position += 2 + segmentLength;
+        }
+    }
+
+    static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    static boolean startsWith(byte[] data, int offset, int length, String signature) {
+        if (length < signature.length()) {
+            return false;
+        }
+        for (int i = 0; i < signature.length(); i++) {
+            if (data[offset + i] != (byte) signature.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
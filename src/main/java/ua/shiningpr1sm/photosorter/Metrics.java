@@ -0,0 +1,279 @@
+package ua.shiningpr1sm.photosorter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class Metrics {
+    public static final String OBJECT_NAME = "ua.shiningpr1sm.photosorter:type=Metrics";
+
+    private static final Map<Stage, Histogram> HISTOGRAMS = new EnumMap<>(Stage.class);
+
+    static {
+        for (Stage stage : Stage.values()) {
+            HISTOGRAMS.put(stage, new Histogram());
+        }
+    }
+
+    public enum Stage {
+        ENUMERATE, DECODE, SCALE, PAINT, MOVE, BIN, UNDO, FOLDER_LOAD, VIDEO_OPEN_COLD, VIDEO_OPEN_WARM, SUGGEST
+    }
+
+    public static final class StageStatistics {
+        private final String stage;
+        private final long count;
+        private final long failures;
+        private final double meanMillis;
+        private final double p50Millis;
+        private final double p95Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+        private final double megabytesPerSecond;
+
+        @ConstructorProperties({"stage", "count", "failures", "meanMillis", "p50Millis", "p95Millis", "p99Millis", "maxMillis",
+                "megabytesPerSecond"})
+        public StageStatistics(String stage, long count, long failures, double meanMillis, double p50Millis, double p95Millis,
+                               double p99Millis, double maxMillis, double megabytesPerSecond) {
+            this.stage = stage;
+            this.count = count;
+            this.failures = failures;
+            this.meanMillis = meanMillis;
+            this.p50Millis = p50Millis;
+            this.p95Millis = p95Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+            this.megabytesPerSecond = megabytesPerSecond;
+        }
+
+        public String getStage() {
+            return stage;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public double getMeanMillis() {
+            return meanMillis;
+        }
+
+        public double getP50Millis() {
+            return p50Millis;
+        }
+
+        public double getP95Millis() {
+            return p95Millis;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+
+        public double getMegabytesPerSecond() {
+            return megabytesPerSecond;
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static void record(Stage stage, long startNanos, boolean succeeded) {
+        long elapsed = Math.max(0, System.nanoTime() - startNanos);
+        HISTOGRAMS.get(stage).add(elapsed, succeeded);
+        StageEvent event = new StageEvent();
+        if (event.isEnabled()) {
+            event.stage = stage.name();
+            event.elapsed = elapsed;
+            event.failed = !succeeded;
+            event.commit();
+        }
+    }
+
+    public static void recordTransfer(Stage stage, long bytes, long nanos) {
+        HISTOGRAMS.get(stage).transfer(bytes, nanos);
+    }
+
+    public static List<StageStatistics> snapshot() {
+        List<StageStatistics> statistics = new ArrayList<>();
+        for (Stage stage : Stage.values()) {
+            statistics.add(HISTOGRAMS.get(stage).statistics(stage.name()));
+        }
+        return statistics;
+    }
+
+    public static String summary() {
+        StringBuilder summary = new StringBuilder(String.format("%-16s %8s %6s %10s %10s %10s %10s %10s %10s%n",
+                "stage", "count", "failed", "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms", "copy MB/s"));
+        for (StageStatistics statistics : snapshot()) {
+            if (statistics.getCount() == 0) {
+                continue;
+            }
+            summary.append(String.format("%-16s %8d %6d %10.2f %10.2f %10.2f %10.2f %10.2f %10s%n", statistics.getStage(),
+                    statistics.getCount(), statistics.getFailures(), statistics.getMeanMillis(), statistics.getP50Millis(),
+                    statistics.getP95Millis(), statistics.getP99Millis(), statistics.getMaxMillis(),
+                    statistics.getMegabytesPerSecond() > 0 ? String.format("%.1f", statistics.getMegabytesPerSecond()) : "-"));
+        }
+        return summary.toString();
+    }
+
+    public static void reset() {
+        for (Histogram histogram : HISTOGRAMS.values()) {
+            histogram.reset();
+        }
+    }
+
+    public static void registerMBean() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), name);
+            }
+        } catch (JMException e) {
+            System.err.println("Could not register the metrics MBean: " + e.getMessage());
+        }
+    }
+
+    private static final class Bean implements MetricsMXBean {
+        @Override
+        public List<StageStatistics> getStages() {
+            return snapshot();
+        }
+
+        @Override
+        public String getSummary() {
+            return summary();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+
+    @Name("ua.shiningpr1sm.photosorter.Stage")
+    @Label("Photo Sorter Stage")
+    @Category("Photo Sorter")
+    @StackTrace(false)
+    static final class StageEvent extends Event {
+        @Label("Stage")
+        String stage;
+
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    private static final class Histogram {
+        private static final int SUB_BUCKETS = 4;
+        private static final int BUCKETS = SUB_BUCKETS * 42;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder transferBytes = new LongAdder();
+        private final LongAdder transferNanos = new LongAdder();
+
+        private void add(long nanos, boolean succeeded) {
+            buckets.incrementAndGet(bucketOf(nanos / 1000));
+            count.increment();
+            if (!succeeded) {
+                failures.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private void transfer(long bytes, long nanos) {
+            transferBytes.add(bytes);
+            transferNanos.add(nanos);
+        }
+
+        private void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            failures.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+            transferBytes.reset();
+            transferNanos.reset();
+        }
+
+        private StageStatistics statistics(String stage) {
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            double max = maxNanos.get() / 1e6;
+            long samples = count.sum();
+            long copyNanos = transferNanos.sum();
+            return new StageStatistics(stage, samples, failures.sum(), samples > 0 ? totalNanos.sum() / 1e6 / samples : 0,
+                    percentile(snapshot, total, 0.50, max), percentile(snapshot, total, 0.95, max),
+                    percentile(snapshot, total, 0.99, max), max,
+                    copyNanos > 0 ? transferBytes.sum() / 1e6 / (copyNanos / 1e9) : 0);
+        }
+
+        private static double percentile(long[] snapshot, long total, double fraction, double max) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return Math.min(max, lowerBound(i + 1) / 1000.0);
+                }
+            }
+            return max;
+        }
+
+        private static int bucketOf(long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) Math.max(0, micros);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = (int) (micros >> (exponent - 2)) & (SUB_BUCKETS - 1);
+            return Math.min(BUCKETS - 1, (exponent - 1) * SUB_BUCKETS + sub);
+        }
+
+        private static long lowerBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + 1;
+            return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - 2);
+        }
+    }
+}
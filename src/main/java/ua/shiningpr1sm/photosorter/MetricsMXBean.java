@@ -0,0 +1,11 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.util.List;
+
+public interface MetricsMXBean {
+    List<Metrics.StageStatistics> getStages();
+
+    String getSummary();
+
+    void reset();
+}
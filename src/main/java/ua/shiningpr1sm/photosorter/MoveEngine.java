@@ -0,0 +1,134 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32C;
+
+public class MoveEngine {
+    static final String PART_SUFFIX = ".part";
+    private static final long TRANSFER_CHUNK = 64L * 1024 * 1024;
+
+    private final boolean verifyChecksum;
+    private final Map<Path, FileStore> fileStores = new ConcurrentHashMap<>();
+
+    public record MoveResult(long bytes, long nanos, boolean crossDevice) {
+    }
+
+    public MoveEngine(boolean verifyChecksum) {
+        this.verifyChecksum = verifyChecksum;
+    }
+
+    public MoveResult move(Path source, Path target) throws IOException {
+        long start = System.nanoTime();
+        long size = Files.size(source);
+        if (sameFileStore(source, target)) {
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                return new MoveResult(size, System.nanoTime() - start, false);
+            } catch (AtomicMoveNotSupportedException e) {
+                // Same store but no rename support (some network shares); fall through to copy.
+            }
+        }
+        copyThenDelete(source, target, size);
+        return new MoveResult(size, System.nanoTime() - start, true);
+    }
+
+    static void deletePartials(Path target) {
+        Path directory = target.toAbsolutePath().getParent();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        String prefix = "." + target.getFileName() + ".";
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, path -> {
+            String name = path.getFileName().toString();
+            return name.startsWith(prefix) && name.endsWith(PART_SUFFIX);
+        })) {
+            for (Path part : stream) {
+                Files.deleteIfExists(part);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not remove partial copies of " + target + ": " + e.getMessage());
+        }
+    }
+
+    private void copyThenDelete(Path source, Path target, long size) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Path part = directory.resolve("." + target.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + PART_SUFFIX);
+        try {
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long position = 0;
+                while (position < size) {
+                    long transferred = in.transferTo(position, Math.min(TRANSFER_CHUNK, size - position), out);
+                    if (transferred <= 0) {
+                        throw new IOException("Copy of " + source + " stalled at " + position + " of " + size + " bytes");
+                    }
+                    position += transferred;
+                }
+                out.force(true);
+            }
+            if (verifyChecksum && checksum(source) != checksum(part)) {
+                throw new IOException("Checksum mismatch after copying " + source + " to " + target);
+            }
+            Files.setLastModifiedTime(part, Files.getLastModifiedTime(source));
+            try {
+                Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            forceDirectory(directory);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        Files.delete(source);
+    }
+
+    private boolean sameFileStore(Path source, Path target) {
+        try {
+            return fileStore(source.toAbsolutePath().getParent()).equals(fileStore(target.toAbsolutePath().getParent()));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private FileStore fileStore(Path directory) throws IOException {
+        FileStore store = fileStores.get(directory);
+        if (store == null) {
+            store = Files.getFileStore(directory);
+            fileStores.put(directory, store);
+        }
+        return store;
+    }
+
+    private static long checksum(Path path) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[1 << 20];
+        try (InputStream input = Files.newInputStream(path)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform (e.g. Windows); the file itself is already forced.
+        }
+    }
+}
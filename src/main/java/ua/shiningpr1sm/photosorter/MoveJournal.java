@@ -0,0 +1,412 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+public class MoveJournal {
+    private static final int MAGIC = 0x50534A4C;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+    private static final long COMPACT_BYTES = 4L * 1024 * 1024;
+    private static final int MAX_HISTORY = 1000;
+    private static final byte INTENT = 1;
+    private static final byte DONE = 2;
+    private static final byte FAILED = 3;
+    private static final byte CANCELLED = 4;
+    private static final byte UNDONE = 5;
+
+    private final Path journalFile;
+    private final LinkedHashMap<Long, Intent> pending = new LinkedHashMap<>();
+    private final LinkedHashMap<Long, Intent> history = new LinkedHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final LinkedBlockingQueue<Append> appends = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private FileChannel channel;
+    private long compactAt = COMPACT_BYTES;
+    private volatile boolean closed;
+
+    public enum Kind {
+        MOVE, BIN, DUPLICATE, UNDO;
+
+        private boolean isUndoable() {
+            return this != UNDO;
+        }
+    }
+
+    public enum Outcome {
+        DONE, FAILED, CANCELLED
+    }
+
+    public record Intent(long id, long batchId, Kind kind, Path source, Path target, Path backup) {
+    }
+
+    public record Recovery(int completed, int rolledBack, int orphanBackups, List<Intent> unresolved) {
+        public boolean isEmpty() {
+            return completed == 0 && rolledBack == 0 && orphanBackups == 0 && unresolved.isEmpty();
+        }
+    }
+
+    private record Append(ByteBuffer record, CompletableFuture<Void> durable) {
+    }
+
+    private MoveJournal(Path journalFile) {
+        this.journalFile = journalFile;
+        this.writer = new Thread(this::writeLoop, "move-journal");
+        this.writer.setDaemon(true);
+    }
+
+    public static MoveJournal open(Path configDirectory, File sourceFolder) throws IOException {
+        Path directory = configDirectory.resolve("journal");
+        Files.createDirectories(directory);
+        String name = Integer.toHexString(sourceFolder.getAbsolutePath().hashCode()) + "-" + sourceFolder.getName().replaceAll("[^A-Za-z0-9_-]", "_");
+        MoveJournal journal = new MoveJournal(directory.resolve(name + ".journal"));
+        journal.load();
+        journal.writer.start();
+        return journal;
+    }
+
+    public long newBatchId() {
+        return nextId.getAndIncrement();
+    }
+
+    public Intent intent(Kind kind, long batchId, Path source, Path target, Path backup) {
+        return new Intent(nextId.getAndIncrement(), batchId, kind, source.toAbsolutePath(), target.toAbsolutePath(),
+                backup != null ? backup.toAbsolutePath() : null);
+    }
+
+    public CompletableFuture<Void> write(Intent intent) {
+        synchronized (this) {
+            pending.put(intent.id(), intent);
+        }
+        return append(encodeIntent(intent));
+    }
+
+    public void finish(long id, Outcome outcome) {
+        byte type = switch (outcome) {
+            case DONE -> DONE;
+            case FAILED -> FAILED;
+            case CANCELLED -> CANCELLED;
+        };
+        synchronized (this) {
+            apply(type, id, null);
+        }
+        append(encodeMark(type, id));
+    }
+
+    public void markUndone(long id) {
+        synchronized (this) {
+            apply(UNDONE, id, null);
+        }
+        append(encodeMark(UNDONE, id));
+    }
+
+    public synchronized List<Intent> history() {
+        return new ArrayList<>(history.values());
+    }
+
+    public Recovery recover(CropBackupStore backups) {
+        List<Intent> interrupted;
+        synchronized (this) {
+            interrupted = new ArrayList<>(pending.values());
+        }
+        int completed = 0;
+        int rolledBack = 0;
+        List<Intent> unresolved = new ArrayList<>();
+        for (Intent intent : interrupted) {
+            MoveEngine.deletePartials(intent.target());
+            boolean sourceExists = Files.exists(intent.source());
+            boolean targetExists = Files.exists(intent.target());
+            try {
+                if (!sourceExists && targetExists) {
+                    finish(intent.id(), Outcome.DONE);
+                    completed++;
+                } else if (sourceExists && targetExists && sameContent(intent.source(), intent.target())) {
+                    Files.delete(intent.source());
+                    finish(intent.id(), Outcome.DONE);
+                    completed++;
+                } else if (sourceExists) {
+                    finish(intent.id(), Outcome.CANCELLED);
+                    rolledBack++;
+                } else {
+                    finish(intent.id(), Outcome.FAILED);
+                    unresolved.add(intent);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not recover move of " + intent.source() + ": " + e.getMessage());
+                unresolved.add(intent);
+            }
+        }
+        return new Recovery(completed, rolledBack, removeOrphanBackups(backups), unresolved);
+    }
+
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        CompletableFuture<Void> flushed = new CompletableFuture<>();
+        appends.add(new Append(null, flushed));
+        try {
+            flushed.get();
+            writer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Could not flush move journal: " + e.getMessage());
+        }
+    }
+
+    private CompletableFuture<Void> append(ByteBuffer record) {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        if (closed) {
+            durable.completeExceptionally(new IOException("Move journal is closed"));
+            return durable;
+        }
+        appends.add(new Append(record, durable));
+        return durable;
+    }
+
+    private void writeLoop() {
+        List<Append> group = new ArrayList<>();
+        while (true) {
+            try {
+                group.add(appends.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            appends.drainTo(group);
+            boolean stop = false;
+            try {
+                if (!channel.isOpen()) {
+                    reopen();
+                }
+                for (Append append : group) {
+                    if (append.record() == null) {
+                        stop = true;
+                        continue;
+                    }
+                    while (append.record().hasRemaining()) {
+                        channel.write(append.record());
+                    }
+                }
+                channel.force(false);
+                for (Append append : group) {
+                    append.durable().complete(null);
+                }
+                if (channel.size() > compactAt) {
+                    compactOrSkip();
+                }
+            } catch (IOException e) {
+                System.err.println("Could not write move journal " + journalFile + ": " + e.getMessage());
+                for (Append append : group) {
+                    append.durable().completeExceptionally(e);
+                }
+            }
+            group.clear();
+            if (stop) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("Could not close move journal: " + e.getMessage());
+                }
+                return;
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        long validEnd = HEADER_BYTES;
+        if (Files.exists(journalFile) && Files.size(journalFile) >= HEADER_BYTES) {
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(journalFile));
+            if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+                throw new IOException("Unsupported move journal format: " + journalFile);
+            }
+            long maxId = 0;
+            while (data.remaining() >= 8) {
+                int length = data.getInt();
+                int crc = data.getInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES || length > data.remaining()) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                data.get(payload);
+                if (crc(payload) != crc) {
+                    break;
+                }
+                ByteBuffer record = ByteBuffer.wrap(payload);
+                byte type = record.get();
+                long id = record.getLong();
+                Intent intent = type == INTENT ? decodeIntent(id, record) : null;
+                apply(type, id, intent);
+                maxId = Math.max(maxId, Math.max(id, intent != null ? intent.batchId() : 0));
+                validEnd = data.position();
+            }
+            nextId.set(maxId + 1);
+        }
+        channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_BYTES) {
+            channel.truncate(0);
+            channel.write(ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip(), 0);
+        } else if (channel.size() > validEnd) {
+            System.err.println("Discarding " + (channel.size() - validEnd) + " bytes of torn move journal records");
+            channel.truncate(validEnd);
+        }
+        channel.force(true);
+        channel.position(channel.size());
+    }
+
+    private void apply(byte type, long id, Intent intent) {
+        switch (type) {
+            case INTENT -> {
+                if (!history.containsKey(id)) {
+                    pending.put(id, intent);
+                }
+            }
+            case DONE -> {
+                Intent done = pending.remove(id);
+                if (done != null && done.kind().isUndoable()) {
+                    history.put(id, done);
+                    if (history.size() > MAX_HISTORY) {
+                        Iterator<Long> eldest = history.keySet().iterator();
+                        eldest.next();
+                        eldest.remove();
+                    }
+                }
+            }
+            case FAILED, CANCELLED -> pending.remove(id);
+            case UNDONE -> history.remove(id);
+            default -> {
+            }
+        }
+    }
+
+    private void compactOrSkip() {
+        try {
+            compact();
+            compactAt = COMPACT_BYTES;
+        } catch (IOException e) {
+            System.err.println("Skipped compacting move journal " + journalFile + ": " + e.getMessage());
+            try {
+                compactAt = channel.size() + COMPACT_BYTES;
+            } catch (IOException sizeError) {
+                compactAt = Long.MAX_VALUE;
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        Path temp = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+        try {
+            try (FileChannel output = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                List<ByteBuffer> records = new ArrayList<>();
+                records.add(ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip());
+                synchronized (this) {
+                    for (Intent intent : history.values()) {
+                        records.add(encodeIntent(intent));
+                        records.add(encodeMark(DONE, intent.id()));
+                    }
+                    for (Intent intent : pending.values()) {
+                        records.add(encodeIntent(intent));
+                    }
+                }
+                for (ByteBuffer record : records) {
+                    while (record.hasRemaining()) {
+                        output.write(record);
+                    }
+                }
+                output.force(true);
+            }
+            channel.close();
+            try {
+                Files.move(temp, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                reopen();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void reopen() throws IOException {
+        channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    private int removeOrphanBackups(CropBackupStore backups) {
+        Set<String> referenced = new HashSet<>();
+        synchronized (this) {
+            for (Intent intent : history.values()) {
+                if (intent.backup() != null) {
+                    referenced.add(intent.source().getFileName().toString());
+                }
+            }
+        }
+        return backups.removeUnreferenced(referenced::contains);
+    }
+
+    private static boolean sameContent(Path first, Path second) throws IOException {
+        return Files.size(first) == Files.size(second) && Arrays.equals(ContentHasher.hash(first), ContentHasher.hash(second));
+    }
+
+    private static ByteBuffer encodeIntent(Intent intent) {
+        byte[] source = intent.source().toString().getBytes(StandardCharsets.UTF_8);
+        byte[] target = intent.target().toString().getBytes(StandardCharsets.UTF_8);
+        byte[] backup = intent.backup() != null ? intent.backup().toString().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        ByteBuffer payload = ByteBuffer.allocate(1 + 8 + 8 + 1 + 6 + source.length + target.length + backup.length);
+        payload.put(INTENT).putLong(intent.id()).putLong(intent.batchId()).put((byte) intent.kind().ordinal());
+        payload.putShort((short) source.length).put(source);
+        payload.putShort((short) target.length).put(target);
+        payload.putShort((short) backup.length).put(backup);
+        return frame(payload.array());
+    }
+
+    private static ByteBuffer encodeMark(byte type, long id) {
+        return frame(ByteBuffer.allocate(9).put(type).putLong(id).array());
+    }
+
+    private static Intent decodeIntent(long id, ByteBuffer record) {
+        long batchId = record.getLong();
+        Kind kind = Kind.values()[record.get()];
+        Path source = Paths.get(readString(record));
+        Path target = Paths.get(readString(record));
+        String backup = readString(record);
+        return new Intent(id, batchId, kind, source, target, backup.isEmpty() ? null : Paths.get(backup));
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getShort() & 0xFFFF];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer frame(byte[] payload) {
+        return ByteBuffer.allocate(8 + payload.length).putInt(payload.length).putInt(crc(payload)).put(payload).flip();
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
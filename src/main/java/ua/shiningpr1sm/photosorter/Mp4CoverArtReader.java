@@ -0,0 +1,84 @@
+package ua.shiningpr1sm.photosorter;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public final class Mp4CoverArtReader {
+    private static final int MAX_COVER_BYTES = 16 * 1024 * 1024;
+    private static final int DATA_HEADER_BYTES = 8;
+    private static final List<String> COVER_PATH = List.of("moov", "udta", "meta", "ilst", "covr", "data");
+
+    private Mp4CoverArtReader() {
+    }
+
+    public static BufferedImage read(File file) {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            long[] box = {0, input.length()};
+            for (String type : COVER_PATH) {
+                box = findBox(input, box[0], box[1], type);
+                if (box == null) {
+                    return null;
+                }
+                if (type.equals("meta") && !startsWithBox(input, box[0], box[1])) {
+                    box[0] += 4;
+                }
+            }
+            long start = box[0] + DATA_HEADER_BYTES;
+            long length = box[1] - start;
+            if (length <= 0 || length > MAX_COVER_BYTES) {
+                return null;
+            }
+            byte[] image = new byte[(int) length];
+            input.seek(start);
+            input.readFully(image);
+            return ImageIO.read(new ByteArrayInputStream(image));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static long[] findBox(RandomAccessFile input, long start, long end, String type) throws IOException {
+        byte[] header = new byte[8];
+        long position = start;
+        while (position + header.length <= end) {
+            input.seek(position);
+            input.readFully(header);
+            long size = u32(header);
+            int headerLength = header.length;
+            if (size == 1) {
+                size = input.readLong();
+                headerLength = 16;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            if (size < headerLength || position + size > end) {
+                return null;
+            }
+            if (type.equals(new String(header, 4, 4, StandardCharsets.US_ASCII))) {
+                return new long[]{position + headerLength, position + size};
+            }
+            position += size;
+        }
+        return null;
+    }
+
+    private static boolean startsWithBox(RandomAccessFile input, long start, long end) throws IOException {
+        if (start + 8 > end) {
+            return false;
+        }
+        byte[] header = new byte[8];
+        input.seek(start);
+        input.readFully(header);
+        return new String(header, 4, 4, StandardCharsets.US_ASCII).equals("hdlr");
+    }
+
+    private static long u32(byte[] data) {
+        return (data[0] & 0xFFL) << 24 | (data[1] & 0xFFL) << 16 | (data[2] & 0xFFL) << 8 | (data[3] & 0xFFL);
+    }
+}
@@ -0,0 +1,181 @@
+package ua.shiningpr1sm.photosorter;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.IOException;
+import java.text.DecimalFormat;
+
+public class PagedTextViewer extends JPanel {
+    private static final int SCROLL_RANGE = 1_000_000;
+    private static final int MARGIN_LINES = 8;
+    private static final int WHEEL_LINES = 3;
+
+    private final JTextArea textArea = new JTextArea();
+    private final JScrollBar scrollBar = new JScrollBar(JScrollBar.VERTICAL, 0, 0, 0, SCROLL_RANGE);
+    private final JLabel statusLabel = new JLabel(" ");
+    private final DecimalFormat numberFormat = new DecimalFormat("#,###");
+    private TextFileWindow window;
+    private long top;
+    private int visibleLines = 1;
+    private boolean updatingScrollBar;
+
+    public PagedTextViewer() {
+        super(new BorderLayout());
+        textArea.setEditable(false);
+        textArea.setFont(new Font("Monospaced", Font.PLAIN, 14));
+        textArea.setLineWrap(false);
+        JPanel textHolder = new JPanel(new BorderLayout());
+        textHolder.add(textArea, BorderLayout.CENTER);
+        add(textHolder, BorderLayout.CENTER);
+        add(scrollBar, BorderLayout.EAST);
+        add(statusLabel, BorderLayout.SOUTH);
+
+        scrollBar.addAdjustmentListener(e -> {
+            if (!updatingScrollBar && window != null) {
+                jumpTo(e.getValue());
+            }
+        });
+        textArea.addMouseWheelListener(e -> scrollLines(e.getWheelRotation() * WHEEL_LINES));
+        textHolder.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                render();
+            }
+        });
+        bindKey(KeyEvent.VK_UP, 0, () -> scrollLines(-1));
+        bindKey(KeyEvent.VK_DOWN, 0, () -> scrollLines(1));
+        bindKey(KeyEvent.VK_PAGE_UP, 0, () -> scrollLines(-visibleLines));
+        bindKey(KeyEvent.VK_PAGE_DOWN, 0, () -> scrollLines(visibleLines));
+        bindKey(KeyEvent.VK_HOME, InputEvent.CTRL_DOWN_MASK, () -> jumpTo(0));
+        bindKey(KeyEvent.VK_END, InputEvent.CTRL_DOWN_MASK, () -> jumpTo(SCROLL_RANGE));
+    }
+
+    public void open(File file) throws IOException {
+        close();
+        TextFileWindow opened = TextFileWindow.open(file.toPath());
+        window = opened;
+        top = opened.dataStart();
+        render();
+        Thread indexer = new Thread(() -> opened.buildLineIndex(() -> SwingUtilities.invokeLater(() -> {
+            if (window == opened) {
+                updateStatus();
+            }
+        })), "text-line-index");
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    public void close() {
+        if (window == null) {
+            return;
+        }
+        try {
+            window.close();
+        } catch (IOException e) {
+            System.err.println("Error closing text file: " + e.getMessage());
+        }
+        window = null;
+        textArea.setText("");
+        statusLabel.setText(" ");
+    }
+
+    private void bindKey(int keyCode, int modifiers, Runnable action) {
+        String name = "PAGED_" + keyCode + "_" + modifiers;
+        textArea.getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(keyCode, modifiers), name);
+        textArea.getActionMap().put(name, new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+
+    private void scrollLines(int lines) {
+        if (window == null || lines == 0) {
+            return;
+        }
+        long position = top;
+        if (lines > 0) {
+            for (int i = 0; i < lines && position < window.size(); i++) {
+                long next = window.nextLineStart(position);
+                if (next >= window.size()) {
+                    break;
+                }
+                position = next;
+            }
+        } else {
+            for (int i = 0; i < -lines && position > window.dataStart(); i++) {
+                position = window.previousLineStart(position);
+            }
+        }
+        top = position;
+        render();
+    }
+
+    private void jumpTo(int scrollValue) {
+        if (window == null) {
+            return;
+        }
+        long length = window.size() - window.dataStart();
+        if (scrollValue >= SCROLL_RANGE) {
+            long position = window.lineStartAtOrBefore(window.size());
+            if (position >= window.size()) {
+                position = window.previousLineStart(position);
+            }
+            for (int i = 1; i < visibleLines && position > window.dataStart(); i++) {
+                position = window.previousLineStart(position);
+            }
+            top = position;
+        } else {
+            long target = window.dataStart() + (long) ((double) length * scrollValue / SCROLL_RANGE);
+            top = window.lineStartAtOrBefore(target);
+        }
+        render();
+    }
+
+    private void render() {
+        if (window == null) {
+            return;
+        }
+        FontMetrics metrics = textArea.getFontMetrics(textArea.getFont());
+        visibleLines = Math.max(1, textArea.getParent().getHeight() / Math.max(1, metrics.getHeight()));
+        try {
+            TextFileWindow.Page page = window.read(top, visibleLines + MARGIN_LINES);
+            textArea.setText(page.text());
+            textArea.setCaretPosition(0);
+        } catch (IOException | RuntimeException e) {
+            textArea.setText("Error reading text file: " + e.getMessage());
+        }
+        updatingScrollBar = true;
+        long length = Math.max(1, window.size() - window.dataStart());
+        int visibleAmount = (int) Math.min(SCROLL_RANGE, Math.max(1, (long) SCROLL_RANGE * visibleLines * 80 / length));
+        scrollBar.setValues((int) ((double) (top - window.dataStart()) / length * SCROLL_RANGE), 0, 0, SCROLL_RANGE);
+        scrollBar.setBlockIncrement(visibleAmount);
+        updatingScrollBar = false;
+        updateStatus();
+    }
+
+    private void updateStatus() {
+        if (window == null) {
+            return;
+        }
+        StringBuilder status = new StringBuilder(window.getCharset().name());
+        status.append(" | ").append(numberFormat.format(window.size())).append(" bytes");
+        long line = window.lineNumberAt(top);
+        if (line > 0) {
+            status.append(" | line ").append(numberFormat.format(line));
+        }
+        if (window.isIndexComplete()) {
+            status.append(" of ").append(numberFormat.format(window.getIndexedLines() + 1));
+        } else {
+            long percent = window.size() > 0 ? window.getIndexedBytes() * 100 / window.size() : 100;
+            status.append(" | indexing lines ").append(percent).append('%');
+        }
+        statusLabel.setText(status.toString());
+    }
+}
@@ -1,20 +1,17 @@
 package ua.shiningpr1sm.photosorter;
 
-import javafx.application.Platform;
 import javafx.embed.swing.JFXPanel;
-import javafx.scene.Group;
-import javafx.scene.Scene;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaException;
 import javafx.scene.media.MediaPlayer;
-import javafx.scene.media.MediaView;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
 
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -22,19 +19,27 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.text.DecimalFormat;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class PhotoSorterSwing {
     private File sourceFolder;
@@ -48,24 +53,27 @@ public class PhotoSorterSwing {
     private File rootFolder;
     private File currentFolder;
     private File previousFolder;
-    private File[] filesToSort;
+    private SourceFileQueue filesToSort;
     private int currentIndex = 0;
+    private File displayedFile;
 
     private final CardLayout previewCardLayout = new CardLayout();
     private final JPanel previewPanel = new JPanel(previewCardLayout);
     private final JLabel imageLabel = new JLabel();
-    private final JTextArea textPreview = new JTextArea();
+    private final JPanel zoomPanel = new JPanel(new BorderLayout());
+    private TileViewer zoomViewer;
+    private final PagedTextViewer textPreview = new PagedTextViewer();
 
     private final JFXPanel jfxPanel;
-    private MediaPlayer mediaPlayer;
-    private MediaView mediaView;
+    private VideoPreview videoPreview;
 
     private final JPanel videoControlsPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 5, 0));
     private final JButton playPauseButton = new JButton("Play");
     private final JButton stopButton = new JButton("Stop");
+    private final JCheckBox autoPlayCheckBox = new JCheckBox("Autoplay", Boolean.getBoolean("photosorter.autoplayVideo"));
 
     private final JLabel statusLabel = new JLabel();
-    private final JPanel folderButtonPanel = new JPanel(new WrapLayout());
+    private FolderPicker folderPicker;
     private final List<File> folders = new ArrayList<>();
     private final int frameHeight = 880;
     private final int frameWidth = 1050;
@@ -73,8 +81,55 @@ public class PhotoSorterSwing {
 
     private final JLabel fileSizeLabel = new JLabel();
     private final JLabel fileExtensionLabel = new JLabel();
+    private final JLabel dimensionsLabel = new JLabel();
+    private final JLabel captureDateLabel = new JLabel();
+    private final JLabel cameraLabel = new JLabel();
+    private final JLabel duplicateLabel = new JLabel();
+    private static final DateTimeFormatter CAPTURE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private static final int PREFETCH_AHEAD = 3;
+    private static final int PREFETCH_BEHIND = 1;
+    private static final int CROP_BYTES_PER_PIXEL = 64;
+    private static final int SUGGESTION_COUNT = 3;
+    private final ImagePreviewLoader previewLoader = new ImagePreviewLoader(
+            Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1)),
+            Math.min(256L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 4));
+    private int previewGeneration = 0;
+    private FolderIndex sourceIndex;
+    private ThumbnailCache thumbnailCache;
+    private ThumbnailGrid thumbnailGrid;
+    private JSplitPane previewSplitPane;
+    private FolderTree folderTree;
+    private DuplicateDetector duplicateDetector;
+    private RecycleBin recycleBin;
+    private MoveJournal moveJournal;
+    private CropBackupStore cropBackups;
+    private FolderSuggester folderSuggester;
+    private final List<File> suggestedFolders = new ArrayList<>();
+    private final JButton[] suggestionButtons = new JButton[SUGGESTION_COUNT];
+    private Thread shutdownHook;
+    private boolean backgroundWorkFinished;
+    private final FileOperationQueue fileOperations = new FileOperationQueue(2, this::onFileOperationFailed);
+    private final Set<FileOperationQueue.Ticket> batchTickets = ConcurrentHashMap.newKeySet();
+    private final JProgressBar batchProgressBar = new JProgressBar();
+    private final MoveEngine moveEngine = new MoveEngine(Boolean.parseBoolean(System.getProperty("photosorter.verifyMoves", "true")));
+
+    private record MoveAction(File movedFile, boolean wasDelete, boolean wasSkip, Path backupPath,
+                              FileOperationQueue.Ticket operation, List<MoveAction> batch, int restoreIndex, long journalId) {
+        MoveAction(File movedFile, boolean wasDelete, boolean wasSkip, Path backupPath, FileOperationQueue.Ticket operation) {
+            this(movedFile, wasDelete, wasSkip, backupPath, operation, List.of(), -1, 0);
+        }
+
+        boolean isBatch() {
+            return !batch.isEmpty();
+        }
+
+        boolean isFromEarlierSession() {
+            return restoreIndex < 0;
+        }
+    }
 
-    private record MoveAction(File movedFile, boolean wasDelete, boolean wasSkip, Path backupPath) {
+    private record QueuedMove(File target, FileOperationQueue.Ticket ticket, long journalId) {
     }
 
     public PhotoSorterSwing() {
@@ -120,17 +175,19 @@ public class PhotoSorterSwing {
         rootFolder = destinationFolder;
         currentFolder = destinationFolder;
         previousFolder = null;
-        File[] allFiles = sourceFolder.listFiles((dir, name) ->
-                name.toLowerCase().matches(".*\\.(jpg|png|jpeg|txt|mp4|m4v|m4a)$"));
-        if (allFiles != null) {
-            filesToSort = allFiles;
-            Arrays.sort(filesToSort);
-        } else {
-            filesToSort = new File[0];
-        }
-        if (filesToSort.length == 0) {
-            JOptionPane.showMessageDialog(null, "No supported files found in the source folder.");
-        }
+        recycleBin = new RecycleBin(destinationFolder, deleteIndex);
+        filesToSort = new SourceFileQueue(() -> currentIndex, this::onSourceFilesChanged);
+        sourceIndex = FolderIndex.open(getConfigFilePath().toAbsolutePath().getParent(), sourceFolder);
+        sourceIndex.startAutoSave();
+        cropBackups = CropBackupStore.open(sourceFolder);
+        folderSuggester = FolderSuggester.open(getConfigFilePath().toAbsolutePath().getParent(), destinationFolder);
+        Metrics.registerMBean();
+        MoveJournal.Recovery recovery = openMoveJournal();
+        previewLoader.setDecodeListener(sourceIndex::record);
+        thumbnailCache = new ThumbnailCache(getConfigFilePath().toAbsolutePath().getParent().resolve("thumbnails"), sourceIndex,
+                2, Math.min(64L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 8), this::onThumbnailsLoaded);
+        shutdownHook = new Thread(this::finishBackgroundWork, "photo-sorter-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
         mainFrame = new JFrame("File Sorter");
         mainFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         mainFrame.setResizable(true);
@@ -152,10 +209,43 @@ public class PhotoSorterSwing {
         setupUIComponents();
         setupKeyBindings();
         updatePreview();
+        folderTree = new FolderTree(destinationFolder);
+        folderTree.addChangeListener(this::onFolderTreeChanged);
+        folderTree.start();
+        folderSuggester.start();
         loadFolders(destinationFolder);
-        printFolderTree(destinationFolder, "");
+        if (Boolean.getBoolean("photosorter.printFolderTree")) {
+            printFolderTree(destinationFolder, "");
+        }
         updateFrameTitle();
         mainFrame.setVisible(true);
+        if (Objects.nonNull(recovery) && !recovery.isEmpty()) {
+            reportRecovery(recovery);
+        }
+        filesToSort.start(sourceFolder);
+    }
+
+    private void onSourceFilesChanged() {
+        thumbnailGrid.refresh();
+        if (Objects.isNull(displayedFile)) {
+            updatePreview();
+        } else {
+            updateFrameTitle();
+        }
+        if (filesToSort.isComplete() && Objects.isNull(duplicateDetector)) {
+            Set<String> names = new HashSet<>();
+            List<File> sources = new ArrayList<>(filesToSort.size());
+            for (int i = 0; i < filesToSort.size(); i++) {
+                names.add(filesToSort.get(i).getName());
+                sources.add(filesToSort.get(i));
+            }
+            sourceIndex.retainOnly(names);
+            duplicateDetector = new DuplicateDetector(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), this::onDuplicatesUpdated);
+            duplicateDetector.start(sources, destinationFolder, sourceIndex, getConfigFilePath().toAbsolutePath().getParent());
+        }
+        if (filesToSort.isComplete() && filesToSort.size() == 0) {
+            JOptionPane.showMessageDialog(mainFrame, "No supported files found in the source folder.");
+        }
     }
 
     private void setupUIComponents() {
@@ -172,6 +262,8 @@ public class PhotoSorterSwing {
         JButton skipButton = new JButton("Skip (V)");
         JButton cropButton = new JButton("Crop");
         JButton undoCropButton = new JButton("Undo Crop");
+        JButton binDuplicatesButton = new JButton("Bin Duplicates (D)");
+        JButton gridButton = new JButton("Grid (G)");
 
         backButton.addActionListener(e -> {
             goBack();
@@ -205,6 +297,14 @@ public class PhotoSorterSwing {
             undoCrop();
             mainFrame.requestFocusInWindow();
         });
+        binDuplicatesButton.addActionListener(e -> {
+            binExactDuplicates();
+            mainFrame.requestFocusInWindow();
+        });
+        gridButton.addActionListener(e -> {
+            toggleGrid();
+            mainFrame.requestFocusInWindow();
+        });
 
         JPanel controlPanel = new JPanel(new WrapLayout());
         controlPanel.add(selectSourceButton);
@@ -217,9 +317,10 @@ public class PhotoSorterSwing {
         controlPanel.add(deleteButton);
         controlPanel.add(cropButton);
         controlPanel.add(undoCropButton);
+        controlPanel.add(binDuplicatesButton);
+        controlPanel.add(gridButton);
 
-        folderButtonPanel.setLayout(new GridLayout(0, calculateColumns(), 5, 5));
-        loadFolderButtons();
+        folderPicker = new FolderPicker(destinationFolder, () -> folderTree.allFolders(), this::selectFolder, this::goBack);
 
         statusLabel.setHorizontalAlignment(SwingConstants.CENTER);
         statusLabel.setFont(statusLabel.getFont().deriveFont(Font.BOLD, 14f));
@@ -230,20 +331,48 @@ public class PhotoSorterSwing {
         JPanel summaryPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 2));
         summaryPanel.add(fileSizeLabel);
         summaryPanel.add(fileExtensionLabel);
+        summaryPanel.add(dimensionsLabel);
+        summaryPanel.add(captureDateLabel);
+        summaryPanel.add(cameraLabel);
+        duplicateLabel.setForeground(new Color(200, 120, 0));
+        summaryPanel.add(duplicateLabel);
 
         JPanel topInfoPanel = new JPanel(new BorderLayout());
         topInfoPanel.add(statusLabel, BorderLayout.NORTH);
         topInfoPanel.add(summaryPanel, BorderLayout.CENTER);
+        batchProgressBar.setStringPainted(true);
+        batchProgressBar.setVisible(false);
+        topInfoPanel.add(batchProgressBar, BorderLayout.SOUTH);
 
         JPanel centerPanel = new JPanel(new BorderLayout());
         centerPanel.add(topInfoPanel, BorderLayout.NORTH);
-        centerPanel.add(previewPanel, BorderLayout.CENTER);
+        thumbnailGrid = new ThumbnailGrid(filesToSort, thumbnailCache, () -> currentIndex, this::openFromGrid, this::updateFrameTitle);
+        previewSplitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, thumbnailGrid, previewPanel);
+        previewSplitPane.setBorder(null);
+        previewSplitPane.setContinuousLayout(true);
+        centerPanel.add(previewSplitPane, BorderLayout.CENTER);
         centerPanel.add(videoControlsPanel, BorderLayout.SOUTH);
 
+        JPanel suggestionPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 2));
+        suggestionPanel.add(new JLabel("Suggested:"));
+        for (int i = 0; i < SUGGESTION_COUNT; i++) {
+            int suggestion = i;
+            suggestionButtons[i] = new JButton();
+            suggestionButtons[i].setVisible(false);
+            suggestionButtons[i].addActionListener(e -> {
+                moveToSuggestedFolder(suggestion);
+                mainFrame.requestFocusInWindow();
+            });
+            suggestionPanel.add(suggestionButtons[i]);
+        }
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        bottomPanel.add(suggestionPanel, BorderLayout.NORTH);
+        bottomPanel.add(folderPicker, BorderLayout.CENTER);
+
         mainPanel = new JPanel(new BorderLayout());
         mainPanel.add(controlPanel, BorderLayout.NORTH);
         mainPanel.add(centerPanel, BorderLayout.CENTER);
-        mainPanel.add(folderButtonPanel, BorderLayout.SOUTH);
+        mainPanel.add(bottomPanel, BorderLayout.SOUTH);
         mainFrame.add(mainPanel);
     }
 
@@ -251,43 +380,49 @@ public class PhotoSorterSwing {
         JScrollPane imageScrollPane = new JScrollPane(imageLabel);
         imageScrollPane.setBorder(null);
         previewPanel.add(imageScrollPane, "IMAGE");
-        textPreview.setEditable(false);
-        textPreview.setFont(new Font("Monospaced", Font.PLAIN, 14));
-        JScrollPane textScrollPane = new JScrollPane(textPreview);
-        textScrollPane.setBorder(null);
-        previewPanel.add(textScrollPane, "TEXT");
+        previewPanel.add(zoomPanel, "ZOOM");
+        imageLabel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2 && SwingUtilities.isLeftMouseButton(e) && Objects.nonNull(displayedFile)
+                        && Objects.nonNull(imageLabel.getIcon()) && !isVideoFile(displayedFile)) {
+                    showZoomViewer(displayedFile);
+                }
+            }
+        });
+        previewPanel.add(textPreview, "TEXT");
         previewPanel.add(jfxPanel, "VIDEO");
 
-        Platform.runLater(() -> {
-            mediaView = new MediaView();
-            Group root = new Group(mediaView);
-            Scene scene = new Scene(root);
-            jfxPanel.setScene(scene);
-            mediaView.fitWidthProperty().bind(jfxPanel.getScene().widthProperty());
-            mediaView.fitHeightProperty().bind(jfxPanel.getScene().heightProperty());
-            mediaView.setPreserveRatio(true);
-        });
+        videoPreview = new VideoPreview(jfxPanel, new VideoPreview.Listener() {
+            @Override
+            public void ready(File file) {
+                if (isDisplayed(file)) {
+                    previewCardLayout.show(previewPanel, "VIDEO");
+                }
+            }
 
-        playPauseButton.addActionListener(e -> {
-            if (mediaPlayer != null) {
-                MediaPlayer.Status status = mediaPlayer.getStatus();
-                if (status == MediaPlayer.Status.PLAYING) {
-                    mediaPlayer.pause();
-                } else if (status == MediaPlayer.Status.PAUSED ||
-                        status == MediaPlayer.Status.READY ||
-                        status == MediaPlayer.Status.STOPPED) {
-                    mediaPlayer.play();
+            @Override
+            public void statusChanged(File file, MediaPlayer.Status status) {
+                if (isDisplayed(file)) {
+                    playPauseButton.setText(status == MediaPlayer.Status.PLAYING ? "Pause" : "Play");
                 }
             }
-        });
-        stopButton.addActionListener(e -> {
-            if (mediaPlayer != null) {
-                mediaPlayer.stop();
+
+            @Override
+            public void failed(File file) {
+                if (isDisplayed(file)) {
+                    showUnsupportedPreview(file);
+                }
             }
         });
 
+        playPauseButton.addActionListener(e -> videoPreview.togglePlayPause());
+        stopButton.addActionListener(e -> videoPreview.stop());
+        autoPlayCheckBox.setFocusable(false);
+
         videoControlsPanel.add(playPauseButton);
         videoControlsPanel.add(stopButton);
+        videoControlsPanel.add(autoPlayCheckBox);
         videoControlsPanel.setVisible(false);
         previewPanel.setBorder(BorderFactory.createEmptyBorder(0, 5, 0, 5));
         videoControlsPanel.setBorder(BorderFactory.createEmptyBorder(5, 0, 5, 0));
@@ -301,113 +436,174 @@ public class PhotoSorterSwing {
     }
 
     private void updatePreview() {
+        previewGeneration++;
+        closeZoomViewer();
         isCurrentPhotoCropped = false;
         videoControlsPanel.setVisible(false);
-        stopPlayback();
-        if (filesToSort.length == 0 || currentIndex >= filesToSort.length) {
+        textPreview.close();
+        displayedFile = null;
+        showSuggestions(List.of());
+        File upcoming = currentIndex < filesToSort.size() ? filesToSort.get(currentIndex) : null;
+        if (Objects.isNull(upcoming) || !isVideoFile(upcoming)) {
+            videoPreview.hide();
+        }
+        if (filesToSort.size() == 0 || currentIndex >= filesToSort.size()) {
             imageLabel.setIcon(null);
-            imageLabel.setText(filesToSort.length == 0 ? "No files found in the source folder." : "No more files to sort.");
+            if (!filesToSort.isComplete()) {
+                imageLabel.setText("Scanning source folder...");
+            } else {
+                imageLabel.setText(filesToSort.size() == 0 ? "No files found in the source folder." : "No more files to sort.");
+            }
             previewCardLayout.show(previewPanel, "IMAGE");
             fileSizeLabel.setText("");
             fileExtensionLabel.setText("");
+            showMetadata(null);
+            duplicateLabel.setText("");
 
             if (mainFrame != null)
-                mainFrame.setTitle("File Sorter | " + (filesToSort.length == 0 ? "No files" : "Sorting complete"));
+                mainFrame.setTitle("File Sorter | " + (!filesToSort.isComplete() ? "Scanning..." : filesToSort.size() == 0 ? "No files" : "Sorting complete"));
             statusLabel.setText(" ");
             return;
         }
 
-        File file = filesToSort[currentIndex];
+        thumbnailGrid.showIndex(currentIndex);
+        File file = filesToSort.get(currentIndex);
+        if (Objects.nonNull(file) && !file.exists() && fileOperations.isPending(file.toPath())) {
+            imageLabel.setIcon(null);
+            imageLabel.setText("Waiting for pending file operation on " + file.getName() + "...");
+            previewCardLayout.show(previewPanel, "IMAGE");
+            int requestedGeneration = previewGeneration;
+            fileOperations.whenSettled(file.toPath()).thenRun(() -> SwingUtilities.invokeLater(() -> {
+                if (requestedGeneration == previewGeneration) {
+                    updatePreview();
+                }
+            }));
+            return;
+        }
         if (Objects.isNull(file) || !file.exists()) {
             currentIndex++;
             updatePreview();
             return;
         }
 
+        displayedFile = file;
         fileSizeLabel.setText("Size: " + formatFileSize(file.length()));
         fileExtensionLabel.setText("Type: ." + getFileExtension(file).toUpperCase());
+        updateDuplicateLabel(file);
 
         String extension = getFileExtension(file);
         switch (extension) {
             case "jpg":
             case "jpeg":
             case "png":
-                showImagePreview(file);
+                ImageMetadataReader.Metadata metadata = ImageMetadataReader.read(file);
+                showMetadata(metadata);
+                showImagePreview(file, metadata);
+                requestSuggestions(file);
                 break;
             case "txt":
+                showMetadata(null);
                 showTextPreview(file);
                 break;
             case "mp4":
             case "m4v":
             case "m4a":
+                showMetadata(null);
                 showVideoPreview(file);
                 break;
             default:
+                showMetadata(null);
                 showUnsupportedPreview(file);
                 break;
         }
+        prepareNextVideo();
         updateFrameTitle();
     }
 
-    private void showVideoPreview(File file) {
-        videoControlsPanel.setVisible(true);
-        previewCardLayout.show(previewPanel, "VIDEO");
-        Platform.runLater(() -> {
-            try {
-                if (mediaPlayer != null) {
-                    mediaPlayer.stop();
-                    mediaPlayer.setOnError(null);
-                    mediaPlayer.setOnReady(null);
-                    mediaPlayer.dispose();
-                    mediaPlayer = null;
-                }
-
-                Media media = new Media(file.toURI().toString());
-                mediaPlayer = new MediaPlayer(media);
-                mediaPlayer.setOnError(() -> {
-                    MediaException error = mediaPlayer.getError();
-                    System.err.println("JavaFX MediaPlayer Error: " + error);
-                    mediaPlayer.dispose();
-                    SwingUtilities.invokeLater(() -> showUnsupportedPreview(file));
-                });
+    private void requestSuggestions(File file) {
+        int requestedGeneration = previewGeneration;
+        folderSuggester.suggest(file, SUGGESTION_COUNT).whenComplete((suggestions, error) -> SwingUtilities.invokeLater(() -> {
+            if (requestedGeneration != previewGeneration) {
+                return;
+            }
+            if (Objects.nonNull(error)) {
+                System.err.println("Could not suggest folders for " + file.getAbsolutePath() + ": " + error.getMessage());
+                return;
+            }
+            showSuggestions(suggestions);
+        }));
+    }
 
-                mediaPlayer.statusProperty().addListener((obs, oldStatus, newStatus) -> SwingUtilities.invokeLater(() -> playPauseButton.setText(newStatus == MediaPlayer.Status.PLAYING ? "Pause" : "Play")));
+    private void showSuggestions(List<File> suggestions) {
+        suggestedFolders.clear();
+        suggestedFolders.addAll(suggestions);
+        Path root = rootFolder.getAbsoluteFile().toPath();
+        for (int i = 0; i < SUGGESTION_COUNT; i++) {
+            JButton button = suggestionButtons[i];
+            if (Objects.isNull(button)) {
+                continue;
+            }
+            if (i < suggestions.size()) {
+                File folder = suggestions.get(i);
+                Path folderPath = folder.getAbsoluteFile().toPath();
+                button.setText((i + 1) + ": " + (folderPath.startsWith(root) ? root.relativize(folderPath) : folder.getName()));
+                button.setToolTipText(folder.getAbsolutePath());
+                button.setVisible(true);
+            } else {
+                button.setVisible(false);
+            }
+        }
+    }
 
-                mediaPlayer.setOnReady(() -> SwingUtilities.invokeLater(() -> playPauseButton.setText("Play")));
+    private void moveToSuggestedFolder(int suggestion) {
+        if (suggestion < suggestedFolders.size()) {
+            moveToFolder(suggestedFolders.get(suggestion));
+        }
+    }
 
-                mediaPlayer.setOnEndOfMedia(() -> {
-                    mediaPlayer.stop();
-                    mediaPlayer.seek(mediaPlayer.getStartTime());
-                    SwingUtilities.invokeLater(() -> playPauseButton.setText("Play"));
-                });
-                mediaView.setMediaPlayer(mediaPlayer);
-                mediaPlayer.setAutoPlay(true);
-            } catch (Exception e) {
-                System.err.println("Error creating JavaFX media: " + e.getMessage());
-                SwingUtilities.invokeLater(() -> showUnsupportedPreview(file));
+    private void showVideoPreview(File file) {
+        videoControlsPanel.setVisible(true);
+        playPauseButton.setText("Play");
+        if (videoPreview.isReady(file)) {
+            previewCardLayout.show(previewPanel, "VIDEO");
+        } else {
+            BufferedImage poster = Mp4CoverArtReader.read(file);
+            if (Objects.nonNull(poster)) {
+                displayPreviewImage(ImageScaler.scaleToFit(poster, previewMaxWidth(), frameHeight - 250, ImageScaler.Quality.FAST));
+            } else {
+                imageLabel.setIcon(null);
+                imageLabel.setText("Loading " + file.getName() + "...");
+                imageLabel.setHorizontalAlignment(JLabel.CENTER);
             }
-        });
+            previewCardLayout.show(previewPanel, "IMAGE");
+        }
+        videoPreview.show(file, autoPlayCheckBox.isSelected());
     }
 
-    private void stopPlayback() {
-        if (mediaPlayer != null) {
-            Platform.runLater(() -> {
-                if (mediaView.getMediaPlayer() != null) {
-                    mediaView.getMediaPlayer().stop();
-                    mediaView.getMediaPlayer().dispose();
-                    mediaView.setMediaPlayer(null);
-                }
-            });
-            mediaPlayer = null;
+    private void prepareNextVideo() {
+        File next = null;
+        for (int i = currentIndex + 1; i <= currentIndex + PREFETCH_AHEAD && i < filesToSort.size() && Objects.isNull(next); i++) {
+            File candidate = filesToSort.get(i);
+            if (Objects.nonNull(candidate) && isVideoFile(candidate) && !fileOperations.isPending(candidate.toPath())) {
+                next = candidate;
+            }
         }
+        videoPreview.prepare(next);
+    }
+
+    private boolean isDisplayed(File file) {
+        return Objects.nonNull(displayedFile) && displayedFile.getAbsoluteFile().equals(file);
     }
 
     private void updateFrameTitle() {
         if (mainFrame == null) return;
-        String fileName = (currentIndex < filesToSort.length && filesToSort[currentIndex] != null) ? filesToSort[currentIndex].getName() : "No file selected";
+        String fileName = (currentIndex < filesToSort.size() && filesToSort.get(currentIndex) != null) ? filesToSort.get(currentIndex).getName() : "No file selected";
         String currentPath = currentFolder != null ? currentFolder.getAbsolutePath() : "";
-        int filesLeft = Math.max(0, filesToSort.length - currentIndex);
-        mainFrame.setTitle("File Sorter | Files Left: " + filesLeft + " | " + fileName + " | Current Folder: " + currentPath);
+        int filesLeft = Math.max(0, filesToSort.size() - currentIndex);
+        String scanning = filesToSort.isComplete() ? "" : "+ (scanning)";
+        int selected = Objects.nonNull(thumbnailGrid) ? thumbnailGrid.getSelectedIndices().length : 0;
+        String selection = selected > 1 ? " | Selected: " + selected : "";
+        mainFrame.setTitle("File Sorter | Files Left: " + filesLeft + scanning + selection + " | " + fileName + " | Current Folder: " + currentPath);
         statusLabel.setText(isCurrentPhotoCropped ? "[CROPPED]" : " ");
     }
 
@@ -418,43 +614,139 @@ public class PhotoSorterSwing {
         previewCardLayout.show(previewPanel, "IMAGE");
     }
 
-    private void showImagePreview(File file) {
+    private void showMetadata(ImageMetadataReader.Metadata metadata) {
+        if (Objects.isNull(metadata)) {
+            dimensionsLabel.setText("");
+            captureDateLabel.setText("");
+            cameraLabel.setText("");
+            return;
+        }
+        dimensionsLabel.setText(metadata.width() > 0 ? "Dimensions: " + metadata.displayWidth() + " x " + metadata.displayHeight() : "");
+        captureDateLabel.setText(Objects.nonNull(metadata.captureDate()) ? "Taken: " + CAPTURE_DATE_FORMAT.format(metadata.captureDate()) : "");
+        cameraLabel.setText(Objects.nonNull(metadata.cameraModel()) ? "Camera: " + metadata.cameraModel() : "");
+    }
+
+    private void showImagePreview(File file, ImageMetadataReader.Metadata metadata) {
+        int maxWidth = previewMaxWidth();
+        int maxHeight = frameHeight - 250;
+        isCurrentPhotoCropped = cropBackups.hasBackup(file);
+        previewCardLayout.show(previewPanel, "IMAGE");
+
+        BufferedImage cachedImage = previewLoader.getCached(file, maxWidth, maxHeight);
+        if (Objects.nonNull(cachedImage)) {
+            displayPreviewImage(cachedImage);
+        } else {
+            FolderIndex.Entry indexed = sourceIndex.lookup(file);
+            BufferedImage placeholder = Objects.nonNull(indexed) ? FolderIndex.decodeThumbnail(indexed) : null;
+            int placeholderOrientation = 1;
+            if (Objects.isNull(placeholder)) {
+                placeholder = EmbeddedThumbnailReader.read(file);
+                placeholderOrientation = Objects.nonNull(metadata) ? metadata.orientation() : 1;
+            }
+            if (Objects.nonNull(placeholder)) {
+                displayPreviewImage(ImageScaler.scaleToFit(placeholder, maxWidth, maxHeight, ImageScaler.Quality.FAST, placeholderOrientation));
+            } else {
+                imageLabel.setIcon(null);
+                imageLabel.setText("Loading " + file.getName() + "...");
+                imageLabel.setHorizontalAlignment(JLabel.CENTER);
+            }
+            int requestedGeneration = previewGeneration;
+            previewLoader.load(file, maxWidth, maxHeight).whenComplete((image, error) -> SwingUtilities.invokeLater(() -> {
+                if (requestedGeneration != previewGeneration) {
+                    return;
+                }
+                if (Objects.nonNull(error)) {
+                    Throwable cause = Objects.nonNull(error.getCause()) ? error.getCause() : error;
+                    System.err.println("Error loading image " + file.getAbsolutePath() + ": " + cause.getMessage());
+                    if (cause instanceof OutOfMemoryError && showZoomViewer(file)) {
+                        return;
+                    }
+                    currentIndex++;
+                    updatePreview();
+                    return;
+                }
+                displayPreviewImage(image);
+            }));
+        }
+        prefetchNeighbours(maxWidth, maxHeight);
+    }
+
+    private int previewMaxWidth() {
+        int gridWidth = thumbnailGrid.isVisible() ? thumbnailGrid.getPreferredSize().width + previewSplitPane.getDividerSize() : 0;
+        return frameWidth - 50 - gridWidth;
+    }
+
+    private boolean showZoomViewer(File file) {
+        closeZoomViewer();
+        ImageMetadataReader.Metadata metadata = ImageMetadataReader.read(file);
+        DecodingTileSource tiles;
         try {
-            BufferedImage originalImage = ImageIO.read(file);
-            if (Objects.isNull(originalImage)) {
-                System.err.println("Could not read image file: " + file.getAbsolutePath());
-                currentIndex++;
-                updatePreview();
-                return;
+            tiles = DecodingTileSource.open(file);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not open " + file.getAbsolutePath() + " for tiled viewing: " + e.getMessage());
+            return false;
+        }
+        int sourceWidth = Objects.nonNull(metadata) && metadata.width() > 0 ? metadata.displayWidth() : tiles.getWidth();
+        int sourceHeight = Objects.nonNull(metadata) && metadata.height() > 0 ? metadata.displayHeight() : tiles.getHeight();
+        TileViewer viewer = new TileViewer(tiles, sourceWidth, sourceHeight);
+        viewer.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2 && SwingUtilities.isLeftMouseButton(e)) {
+                    if (viewer.isFitted()) {
+                        viewer.zoomToActualSize(e.getX(), e.getY());
+                    } else {
+                        viewer.fitToWindow();
+                    }
+                }
             }
-            int maxWidth = frameWidth - 50;
-            int maxHeight = frameHeight - 250;
-            int imgWidth = originalImage.getWidth();
-            int imgHeight = originalImage.getHeight();
-            double ratio = Math.min((double) maxWidth / imgWidth, (double) maxHeight / imgHeight);
-            int newWidth = (int) (imgWidth * ratio);
-            int newHeight = (int) (imgHeight * ratio);
-
-            Image scaledImage = originalImage.getScaledInstance(newWidth, newHeight, Image.SCALE_SMOOTH);
-            imageLabel.setText(null);
-            imageLabel.setIcon(new ImageIcon(scaledImage));
-            imageLabel.setHorizontalAlignment(JLabel.CENTER);
-            File backupFile = new File(file.getAbsolutePath() + ".bak");
-            isCurrentPhotoCropped = backupFile.exists();
-            previewCardLayout.show(previewPanel, "IMAGE");
-        } catch (IOException e) {
-            System.err.println("Error loading image " + file.getAbsolutePath() + ": " + e.getMessage());
-            currentIndex++;
-            updatePreview();
+        });
+        zoomViewer = viewer;
+        zoomPanel.add(viewer, BorderLayout.CENTER);
+        zoomPanel.revalidate();
+        previewCardLayout.show(previewPanel, "ZOOM");
+        return true;
+    }
+
+    private void closeZoomViewer() {
+        if (Objects.isNull(zoomViewer)) {
+            return;
         }
+        zoomPanel.remove(zoomViewer);
+        zoomViewer.close();
+        zoomViewer = null;
+    }
+
+    private void displayPreviewImage(BufferedImage image) {
+        imageLabel.setText(null);
+        imageLabel.setIcon(new ImageIcon(image));
+        imageLabel.setHorizontalAlignment(JLabel.CENTER);
+    }
+
+    private void prefetchNeighbours(int maxWidth, int maxHeight) {
+        List<File> neighbours = new ArrayList<>();
+        for (int i = currentIndex + 1; i <= currentIndex + PREFETCH_AHEAD && i < filesToSort.size(); i++) {
+            neighbours.add(filesToSort.get(i));
+        }
+        for (int i = currentIndex - 1; i >= currentIndex - PREFETCH_BEHIND && i >= 0; i--) {
+            neighbours.add(filesToSort.get(i));
+        }
+        neighbours.removeIf(file -> Objects.isNull(file) || !isImageFile(file));
+        previewLoader.prefetch(neighbours, maxWidth, maxHeight);
+    }
+
+    private boolean isImageFile(File file) {
+        return Arrays.asList("jpg", "jpeg", "png").contains(getFileExtension(file));
+    }
+
+    private boolean isVideoFile(File file) {
+        return Arrays.asList("mp4", "m4v", "m4a").contains(getFileExtension(file));
     }
 
     private void showTextPreview(File file) {
         try {
-            String content = Files.readString(file.toPath());
-            textPreview.setText(content);
-            textPreview.setCaretPosition(0);
             previewCardLayout.show(previewPanel, "TEXT");
+            textPreview.open(file);
         } catch (IOException e) {
             System.err.println("Error reading text file " + file.getAbsolutePath() + ": " + e.getMessage());
             currentIndex++;
@@ -467,57 +759,203 @@ public class PhotoSorterSwing {
         ActionMap actionMap = mainPanel.getActionMap();
 
         inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, 0), "BACK_ACTION");
-        actionMap.put("BACK_ACTION", new AbstractAction() {
-            public void actionPerformed(ActionEvent e) {
-                goBack();
-            }
-        });
+        actionMap.put("BACK_ACTION", shortcut(this::goBack));
 
         inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_X, 0), "UNDO_ACTION");
-        actionMap.put("UNDO_ACTION", new AbstractAction() {
-            public void actionPerformed(ActionEvent e) {
-                undoMove();
-            }
-        });
+        actionMap.put("UNDO_ACTION", shortcut(this::undoMove));
 
         inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_C, 0), "MOVE_ACTION");
-        actionMap.put("MOVE_ACTION", new AbstractAction() {
-            public void actionPerformed(ActionEvent e) {
-                moveToSelectedFolder();
-            }
-        });
+        actionMap.put("MOVE_ACTION", shortcut(this::moveToSelectedFolder));
 
         inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_V, 0), "SKIP_ACTION");
-        actionMap.put("SKIP_ACTION", new AbstractAction() {
+        actionMap.put("SKIP_ACTION", shortcut(this::skipPhoto));
+
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_D, 0), "BIN_DUPLICATES_ACTION");
+        actionMap.put("BIN_DUPLICATES_ACTION", shortcut(this::binExactDuplicates));
+
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_RIGHT, InputEvent.SHIFT_DOWN_MASK), "EXTEND_SELECTION");
+        actionMap.put("EXTEND_SELECTION", shortcut(() -> thumbnailGrid.extendSelection(1)));
+
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_LEFT, InputEvent.SHIFT_DOWN_MASK), "SHRINK_SELECTION");
+        actionMap.put("SHRINK_SELECTION", shortcut(() -> thumbnailGrid.extendSelection(-1)));
+
+        for (int i = 0; i < SUGGESTION_COUNT; i++) {
+            int suggestion = i;
+            inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_1 + i, 0), "SUGGESTION_" + (i + 1));
+            inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_NUMPAD1 + i, 0), "SUGGESTION_" + (i + 1));
+            actionMap.put("SUGGESTION_" + (i + 1), shortcut(() -> moveToSuggestedFolder(suggestion)));
+        }
+
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_G, 0), "TOGGLE_GRID");
+        actionMap.put("TOGGLE_GRID", shortcut(this::toggleGrid));
+
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_F, InputEvent.CTRL_DOWN_MASK), "FIND_FOLDER");
+        actionMap.put("FIND_FOLDER", new AbstractAction() {
             public void actionPerformed(ActionEvent e) {
-                skipPhoto();
+                folderPicker.focusFilter();
             }
         });
 
         inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_BACK_QUOTE, 0), "EMERGENCY_EXIT");
-        actionMap.put("EMERGENCY_EXIT", new AbstractAction() {
+        actionMap.put("EMERGENCY_EXIT", shortcut(() -> System.exit(0)));
+    }
+
+    private Action shortcut(Runnable action) {
+        return new AbstractAction() {
+            @Override
+            public boolean isEnabled() {
+                return !folderPicker.isFilterFocused();
+            }
+
             public void actionPerformed(ActionEvent e) {
-                System.exit(0);
+                action.run();
             }
-        });
+        };
     }
 
-    private void recordNewActionAndNext(File targetFile, boolean isDelete, boolean isSkip, Path backupPath) {
+    private void recordNewActionAndNext(File targetFile, boolean isDelete, boolean isSkip, Path backupPath, QueuedMove queued) {
         if (!moveHistory.isEmpty()) {
-            MoveAction previousAction = moveHistory.peek();
-            if (Objects.nonNull(previousAction.backupPath) && Files.exists(previousAction.backupPath)) {
-                try {
-                    Files.delete(previousAction.backupPath);
-                } catch (IOException e) {
-                    System.err.println("Could not clean up stale backup file: " + previousAction.backupPath);
-                }
-            }
+            cropBackups.discard(moveHistory.peek().backupPath);
         }
-        MoveAction newAction = new MoveAction(targetFile, isDelete, isSkip, backupPath);
+        MoveAction newAction = new MoveAction(targetFile, isDelete, isSkip, backupPath,
+                Objects.nonNull(queued) ? queued.ticket : null, List.of(), currentIndex, Objects.nonNull(queued) ? queued.journalId : 0);
         moveHistory.push(newAction);
         nextFile();
     }
 
+    private void onFileOperationFailed(FileOperationQueue.Ticket ticket, Throwable error) {
+        if (batchTickets.contains(ticket)) {
+            return;
+        }
+        moveHistory.removeIf(action -> action.operation == ticket);
+        JOptionPane.showMessageDialog(mainFrame, ticket.getDescription() + " failed: " + error.getMessage()
+                + "\nThe file was left where it was.", "Error", JOptionPane.ERROR_MESSAGE);
+        updateFrameTitle();
+    }
+
+    private synchronized void finishBackgroundWork() {
+        if (backgroundWorkFinished) {
+            return;
+        }
+        backgroundWorkFinished = true;
+        if (!fileOperations.awaitIdle(5, TimeUnit.MINUTES)) {
+            System.err.println("Timed out waiting for " + fileOperations.getPendingCount() + " file operations.");
+        }
+        fileOperations.shutdown();
+        sourceIndex.close();
+        folderSuggester.close();
+        if (Objects.nonNull(moveJournal)) {
+            moveJournal.close();
+        }
+        System.out.print("Session metrics:" + System.lineSeparator() + Metrics.summary());
+        Metrics.reset();
+    }
+
+    private QueuedMove queueMove(File sourceFile, File targetFile, String description, MoveJournal.Kind kind, long batchId,
+                                 Path backupPath) {
+        if (Objects.isNull(moveJournal)) {
+            return new QueuedMove(targetFile, fileOperations.submit(List.of(sourceFile.toPath(), targetFile.toPath()), description,
+                    timed(stageOf(kind), () -> moveFile(sourceFile, targetFile, stageOf(kind))), videoPreview.release(sourceFile)), 0);
+        }
+        MoveJournal.Intent intent = moveJournal.intent(kind, batchId, sourceFile.toPath(), targetFile.toPath(), backupPath);
+        FileOperationQueue.Ticket ticket = fileOperations.submit(List.of(sourceFile.toPath(), targetFile.toPath()), description,
+                timed(stageOf(kind), () -> moveFile(sourceFile, targetFile, stageOf(kind))),
+                CompletableFuture.allOf(videoPreview.release(sourceFile), moveJournal.write(intent)));
+        journalOutcome(ticket, intent.id());
+        return new QueuedMove(targetFile, ticket, intent.id());
+    }
+
+    private void journalOutcome(FileOperationQueue.Ticket ticket, long journalId) {
+        ticket.completion().whenComplete((ignored, error) -> {
+            MoveJournal.Outcome outcome = ticket.getState() == FileOperationQueue.State.CANCELLED ? MoveJournal.Outcome.CANCELLED
+                    : Objects.isNull(error) ? MoveJournal.Outcome.DONE : MoveJournal.Outcome.FAILED;
+            moveJournal.finish(journalId, outcome);
+        });
+    }
+
+    private MoveJournal.Recovery openMoveJournal() {
+        try {
+            moveJournal = MoveJournal.open(getConfigFilePath().toAbsolutePath().getParent(), sourceFolder);
+        } catch (IOException e) {
+            System.err.println("Could not open the move journal; undo history will not survive a restart: " + e.getMessage());
+            return null;
+        }
+        MoveJournal.Recovery recovery = moveJournal.recover(cropBackups);
+        Map<Long, List<MoveJournal.Intent>> groups = new LinkedHashMap<>();
+        for (MoveJournal.Intent entry : moveJournal.history()) {
+            groups.computeIfAbsent(entry.batchId() != 0 ? entry.batchId() : -entry.id(), key -> new ArrayList<>()).add(entry);
+        }
+        for (List<MoveJournal.Intent> group : groups.values()) {
+            MoveJournal.Intent first = group.get(0);
+            if (first.batchId() == 0) {
+                moveHistory.push(fromJournal(first));
+                continue;
+            }
+            List<MoveAction> items = new ArrayList<>();
+            for (MoveJournal.Intent entry : group) {
+                items.add(fromJournal(entry));
+            }
+            moveHistory.push(new MoveAction(null, isBin(first.kind()), false, null, null, List.copyOf(items), -1, first.batchId()));
+        }
+        return recovery;
+    }
+
+    private static MoveAction fromJournal(MoveJournal.Intent entry) {
+        return new MoveAction(entry.target().toFile(), isBin(entry.kind()), false, entry.backup(), null,
+                List.of(), -1, entry.id());
+    }
+
+    private void reportRecovery(MoveJournal.Recovery recovery) {
+        StringBuilder message = new StringBuilder("The previous session did not finish all of its file operations.\n");
+        if (recovery.completed() > 0) {
+            message.append("\nCompleted: ").append(recovery.completed());
+        }
+        if (recovery.rolledBack() > 0) {
+            message.append("\nLeft in the source folder: ").append(recovery.rolledBack());
+        }
+        if (recovery.orphanBackups() > 0) {
+            message.append("\nStale crop backups removed: ").append(recovery.orphanBackups());
+        }
+        if (!recovery.unresolved().isEmpty()) {
+            message.append("\nCould not be found anywhere: ").append(recovery.unresolved().size());
+            for (MoveJournal.Intent intent : recovery.unresolved().subList(0, Math.min(20, recovery.unresolved().size()))) {
+                message.append("\n").append(intent.source().getFileName()).append(" -> ").append(intent.target());
+            }
+        }
+        System.out.println(message);
+        JOptionPane.showMessageDialog(mainFrame, message.toString(), "Recovered file operations",
+                recovery.unresolved().isEmpty() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+    }
+
+    private static Metrics.Stage stageOf(MoveJournal.Kind kind) {
+        return isBin(kind) ? Metrics.Stage.BIN : Metrics.Stage.MOVE;
+    }
+
+    private static boolean isBin(MoveJournal.Kind kind) {
+        return kind == MoveJournal.Kind.BIN || kind == MoveJournal.Kind.DUPLICATE;
+    }
+
+    private static FileOperationQueue.Operation timed(Metrics.Stage stage, FileOperationQueue.Operation operation) {
+        return () -> {
+            long start = System.nanoTime();
+            boolean succeeded = false;
+            try {
+                operation.run();
+                succeeded = true;
+            } finally {
+                Metrics.record(stage, start, succeeded);
+            }
+        };
+    }
+
+    private void moveFile(File sourceFile, File targetFile, Metrics.Stage stage) throws IOException {
+        MoveEngine.MoveResult result = moveEngine.move(sourceFile.toPath(), targetFile.toPath());
+        // A rename moves no data, so only copies across devices say anything about throughput.
+        if (result.crossDevice()) {
+            Metrics.recordTransfer(stage, result.bytes(), result.nanos());
+        }
+    }
+
     private void moveToSelectedFolder() {
         moveToFolder(currentFolder);
         currentFolder = rootFolder;
@@ -527,8 +965,9 @@ public class PhotoSorterSwing {
     }
 
     private void moveToFolder(File destination) {
-        if (currentIndex >= filesToSort.length) return;
-        File sourceFile = filesToSort[currentIndex];
+        if (moveSelection(destination)) return;
+        if (currentIndex >= filesToSort.size()) return;
+        File sourceFile = filesToSort.get(currentIndex);
         if (Objects.isNull(sourceFile) || !sourceFile.exists()) {
             System.err.println("Source file does not exist at index " + currentIndex);
             nextFile();
@@ -536,52 +975,205 @@ public class PhotoSorterSwing {
         }
         Runnable moveAction = () -> {
             File targetFile = new File(destination, sourceFile.getName());
-            Path backupPath = null;
-            File backupFileForCurrent = new File(sourceFile.getAbsolutePath() + ".bak");
-            if (backupFileForCurrent.exists()) {
-                backupPath = backupFileForCurrent.toPath();
-            }
-            try {
-                Files.move(sourceFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                recordNewActionAndNext(targetFile, false, false, backupPath);
-            } catch (IOException e) {
-                System.err.println("Error moving file " + sourceFile.getName() + " to " + destination.getName() + ": " + e.getMessage());
-                JOptionPane.showMessageDialog(mainFrame, "Failed to move file: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                updatePreview();
-            }
+            Path backupPath = cropBackups.backupPath(sourceFile);
+            QueuedMove queued = queueMove(sourceFile, targetFile, "Moving " + sourceFile.getName() + " to " + destination.getName(),
+                    MoveJournal.Kind.MOVE, 0, backupPath);
+            learnDestination(sourceFile, queued);
+            sourceIndex.remove(sourceFile);
+            recordNewActionAndNext(targetFile, false, false, backupPath, queued);
         };
-        stopPlaybackAndThen(moveAction);
+        releasePreviewAndThen(moveAction);
     }
 
     private void deletePhoto() {
-        if (currentIndex >= filesToSort.length) return;
-        File photoToDelete = filesToSort[currentIndex];
+        if (moveSelection(null)) return;
+        if (currentIndex >= filesToSort.size()) return;
+        File photoToDelete = filesToSort.get(currentIndex);
         if (Objects.isNull(photoToDelete) || !photoToDelete.exists()) {
             System.err.println("Photo to delete does not exist at index " + currentIndex);
             nextFile();
             return;
         }
         Runnable deleteAction = () -> {
-            Path backupPath = null;
-            File backupFileForCurrent = new File(photoToDelete.getAbsolutePath() + ".bak");
-            if (backupFileForCurrent.exists()) {
-                backupPath = backupFileForCurrent.toPath();
-            }
-            File binFile = moveToBin(photoToDelete);
-            if (Objects.nonNull(binFile)) {
-                recordNewActionAndNext(binFile, true, false, backupPath);
+            Path backupPath = cropBackups.backupPath(photoToDelete);
+            QueuedMove binMove = moveToBin(photoToDelete, MoveJournal.Kind.BIN, 0, backupPath);
+            if (Objects.nonNull(binMove)) {
+                sourceIndex.remove(photoToDelete);
+                recordNewActionAndNext(binMove.target, true, false, backupPath, binMove);
             } else {
                 JOptionPane.showMessageDialog(mainFrame, "Failed to move photo to bin.", "Error", JOptionPane.ERROR_MESSAGE);
                 updatePreview();
             }
         };
-        stopPlaybackAndThen(deleteAction);
+        releasePreviewAndThen(deleteAction);
+    }
+
+    private boolean moveSelection(File destination) {
+        int[] selected = thumbnailGrid.getSelectedIndices();
+        if (selected.length < 2) {
+            return false;
+        }
+        boolean toBin = Objects.isNull(destination);
+        String description = toBin ? "Moving " + selected.length + " files to bin" : "Moving " + selected.length + " files to " + destination.getName();
+        releasePreviewAndThen(() -> {
+            long batchId = Objects.nonNull(moveJournal) ? moveJournal.newBatchId() : 0;
+            List<MoveAction> items = new ArrayList<>();
+            List<String> failures = new ArrayList<>();
+            Set<Integer> batchIndices = new HashSet<>();
+            for (int index : selected) {
+                batchIndices.add(index);
+                File file = filesToSort.get(index);
+                if (Objects.isNull(file) || !file.exists() || fileOperations.isPending(file.toPath())) {
+                    continue;
+                }
+                Path backupPath = cropBackups.backupPath(file);
+                QueuedMove queued = toBin ? moveToBin(file, MoveJournal.Kind.BIN, batchId, backupPath)
+                        : queueBatchMove(file, new File(destination, file.getName()), batchId, backupPath);
+                if (Objects.isNull(queued)) {
+                    failures.add(file.getName() + ": could not create bin folder");
+                    continue;
+                }
+                batchTickets.add(queued.ticket);
+                sourceIndex.remove(file);
+                if (Objects.nonNull(duplicateDetector)) {
+                    duplicateDetector.forget(file);
+                }
+                items.add(new MoveAction(queued.target, toBin, false, backupPath, queued.ticket, List.of(), index, queued.journalId));
+            }
+            if (!items.isEmpty()) {
+                moveHistory.push(new MoveAction(null, toBin, false, null, null, List.copyOf(items), currentIndex, batchId));
+            }
+            trackBatch(description, items, failures);
+            while (batchIndices.contains(currentIndex)) {
+                currentIndex++;
+            }
+            updatePreview();
+        });
+        return true;
+    }
+
+    private QueuedMove queueBatchMove(File sourceFile, File targetFile, long batchId, Path backupPath) {
+        QueuedMove queued = queueMove(sourceFile, targetFile, "Moving " + sourceFile.getName() + " to " + targetFile.getParentFile().getName(),
+                MoveJournal.Kind.MOVE, batchId, backupPath);
+        learnDestination(sourceFile, queued);
+        return queued;
+    }
+
+    private void learnDestination(File sourceFile, QueuedMove queued) {
+        queued.ticket.completion().thenRun(() -> folderSuggester.fileLanded(sourceFile, queued.target));
+    }
+
+    private void trackBatch(String description, List<MoveAction> items, List<String> failures) {
+        int total = items.size() + failures.size();
+        int[] finished = {failures.size()};
+        batchProgressBar.setMaximum(Math.max(1, total));
+        batchProgressBar.setValue(finished[0]);
+        batchProgressBar.setString(description + ": " + finished[0] + "/" + total);
+        batchProgressBar.setVisible(true);
+        List<CompletableFuture<Void>> completions = new ArrayList<>();
+        for (MoveAction item : items) {
+            completions.add(item.operation.completion().handle((ignored, error) -> {
+                SwingUtilities.invokeLater(() -> {
+                    batchTickets.remove(item.operation);
+                    finished[0]++;
+                    if (Objects.nonNull(error)) {
+                        Throwable cause = Objects.nonNull(error.getCause()) ? error.getCause() : error;
+                        failures.add(item.operation.getDescription() + ": " + cause.getMessage());
+                    }
+                    batchProgressBar.setValue(finished[0]);
+                    batchProgressBar.setString(description + ": " + finished[0] + "/" + total);
+                });
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(completions.toArray(new CompletableFuture<?>[0])).thenRun(() -> SwingUtilities.invokeLater(() -> {
+            batchProgressBar.setVisible(false);
+            if (!failures.isEmpty()) {
+                StringBuilder message = new StringBuilder(description + ": " + failures.size() + " of " + total + " failed.\n");
+                for (int i = 0; i < Math.min(20, failures.size()); i++) {
+                    message.append("\n").append(failures.get(i));
+                }
+                if (failures.size() > 20) {
+                    message.append("\n... and ").append(failures.size() - 20).append(" more");
+                }
+                message.append("\n\nThe failed files were left where they were.");
+                JOptionPane.showMessageDialog(mainFrame, message.toString(), "Batch move", JOptionPane.ERROR_MESSAGE);
+            }
+        }));
+    }
+
+    private void onDuplicatesUpdated() {
+        if (Objects.nonNull(displayedFile)) {
+            updateDuplicateLabel(displayedFile);
+        }
+    }
+
+    private void updateDuplicateLabel(File file) {
+        DuplicateDetector.Match match = Objects.nonNull(duplicateDetector) ? duplicateDetector.duplicateOf(file) : null;
+        if (Objects.isNull(match)) {
+            duplicateLabel.setText("");
+            return;
+        }
+        String original = match.original().getAbsolutePath();
+        String destinationPrefix = destinationFolder.getAbsolutePath() + File.separator;
+        if (original.startsWith(destinationPrefix)) {
+            original = original.substring(destinationPrefix.length());
+        } else {
+            original = match.original().getName();
+        }
+        duplicateLabel.setText(match.exact() ? "Duplicate of " + original
+                : "Near-duplicate of " + original + " (" + match.distance() + "/64 bits differ)");
+    }
+
+    private void binExactDuplicates() {
+        if (Objects.isNull(duplicateDetector)) {
+            JOptionPane.showMessageDialog(mainFrame, "The duplicate scan starts when the source folder has been listed.", "Duplicates", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        List<File> duplicates = new ArrayList<>();
+        for (File file : duplicateDetector.exactDuplicates()) {
+            if (file.exists() && !fileOperations.isPending(file.toPath())) {
+                duplicates.add(file);
+            }
+        }
+        if (duplicates.isEmpty()) {
+            String message = duplicateDetector.isComplete() ? "No exact duplicates found." : "No exact duplicates found yet; the scan is still running.";
+            JOptionPane.showMessageDialog(mainFrame, message, "Duplicates", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        int choice = JOptionPane.showConfirmDialog(mainFrame, "Move " + duplicates.size() + " exact duplicate file(s) to the bin?",
+                "Duplicates", JOptionPane.YES_NO_OPTION);
+        if (choice != JOptionPane.YES_OPTION) {
+            return;
+        }
+        releasePreviewAndThen(() -> {
+            long batchId = Objects.nonNull(moveJournal) ? moveJournal.newBatchId() : 0;
+            List<MoveAction> items = new ArrayList<>();
+            List<String> failures = new ArrayList<>();
+            for (File file : duplicates) {
+                Path backupPath = cropBackups.backupPath(file);
+                QueuedMove binMove = moveToBin(file, MoveJournal.Kind.DUPLICATE, batchId, backupPath);
+                if (Objects.isNull(binMove)) {
+                    failures.add(file.getName() + ": could not create bin folder");
+                    continue;
+                }
+                batchTickets.add(binMove.ticket);
+                sourceIndex.remove(file);
+                duplicateDetector.forget(file);
+                items.add(new MoveAction(binMove.target, true, false, backupPath, binMove.ticket, List.of(), currentIndex, binMove.journalId));
+            }
+            if (!items.isEmpty()) {
+                moveHistory.push(new MoveAction(null, true, false, null, null, List.copyOf(items), currentIndex, batchId));
+            }
+            trackBatch("Moving " + duplicates.size() + " duplicates to bin", items, failures);
+            updatePreview();
+        });
     }
 
     private void skipPhoto() {
-        if (currentIndex < filesToSort.length) {
-            File sourceFile = filesToSort[currentIndex];
-            recordNewActionAndNext(sourceFile, false, true, null);
+        if (currentIndex < filesToSort.size()) {
+            File sourceFile = filesToSort.get(currentIndex);
+            recordNewActionAndNext(sourceFile, false, true, null, null);
         }
     }
 
@@ -592,44 +1184,107 @@ public class PhotoSorterSwing {
                 return;
             }
             MoveAction actionToUndo = moveHistory.pop();
+            if (actionToUndo.isBatch()) {
+                undoBatch(actionToUndo);
+                return;
+            }
             File fileToMoveBack = actionToUndo.movedFile;
-            if (Objects.isNull(fileToMoveBack) || !fileToMoveBack.exists() && !actionToUndo.wasSkip) {
+            boolean notYetMoved = Objects.nonNull(actionToUndo.operation) && actionToUndo.operation.cancel();
+            boolean stillMoving = Objects.nonNull(actionToUndo.operation) && !notYetMoved
+                    && actionToUndo.operation.getState() != FileOperationQueue.State.DONE;
+            if (Objects.isNull(fileToMoveBack) || !fileToMoveBack.exists() && !actionToUndo.wasSkip && !notYetMoved && !stillMoving) {
                 JOptionPane.showMessageDialog(mainFrame, "Original file for undo not found. Cannot undo.", "Undo Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
-            boolean success = false;
-            if (actionToUndo.wasSkip) {
-                success = true;
+            if (!actionToUndo.wasSkip) {
+                queueUndo(actionToUndo, notYetMoved);
+            }
+            if (actionToUndo.isFromEarlierSession()) {
+                filesToSort.insert(currentIndex, List.of(new File(sourceFolder, fileToMoveBack.getName())));
+                thumbnailGrid.refresh();
             } else {
-                File destinationInSource = new File(sourceFolder, fileToMoveBack.getName());
-                try {
-                    Files.move(fileToMoveBack.toPath(), destinationInSource.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                    if (Objects.nonNull(actionToUndo.backupPath) && Files.exists(actionToUndo.backupPath)) {
-                        Files.copy(actionToUndo.backupPath, destinationInSource.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                        Files.delete(actionToUndo.backupPath);
-                    }
-                    if (actionToUndo.wasDelete) {
-                        File deleteFolder = fileToMoveBack.getParentFile();
-                        if (Objects.nonNull(deleteFolder) && deleteFolder.getName().startsWith("Delete_folder_")) {
-                            File[] remainingFiles = deleteFolder.listFiles();
-                            if (Objects.nonNull(remainingFiles) && remainingFiles.length == 0) {
-                                Files.delete(deleteFolder.toPath());
-                            }
+                currentIndex = actionToUndo.restoreIndex;
+            }
+            updatePreview();
+        };
+        releasePreviewAndThen(undoAction);
+    }
+
+    private void undoBatch(MoveAction batchAction) {
+        List<MoveAction> undoItems = new ArrayList<>();
+        List<File> restoredFromEarlierSession = new ArrayList<>();
+        int restoreIndex = batchAction.restoreIndex;
+        for (MoveAction item : batchAction.batch) {
+            boolean notYetMoved = Objects.nonNull(item.operation) && item.operation.cancel();
+            if (Objects.nonNull(item.operation) && !notYetMoved && item.operation.getState() == FileOperationQueue.State.FAILED) {
+                continue;
+            }
+            if (item.isFromEarlierSession()) {
+                if (!item.movedFile.exists()) {
+                    continue;
+                }
+                restoredFromEarlierSession.add(new File(sourceFolder, item.movedFile.getName()));
+            }
+            FileOperationQueue.Ticket ticket = queueUndo(item, notYetMoved);
+            batchTickets.add(ticket);
+            undoItems.add(new MoveAction(item.movedFile, false, false, null, ticket));
+            restoreIndex = Math.min(restoreIndex, item.restoreIndex);
+        }
+        trackBatch("Undoing " + undoItems.size() + " files", undoItems, new ArrayList<>());
+        if (batchAction.isFromEarlierSession()) {
+            Collections.sort(restoredFromEarlierSession);
+            filesToSort.insert(currentIndex, restoredFromEarlierSession);
+            thumbnailGrid.refresh();
+        } else {
+            currentIndex = Math.max(0, restoreIndex);
+        }
+        updatePreview();
+    }
+
+    private FileOperationQueue.Ticket queueUndo(MoveAction action, boolean notYetMoved) {
+        File fileToMoveBack = action.movedFile;
+        File destinationInSource = new File(sourceFolder, fileToMoveBack.getName());
+        Path backupPath = action.backupPath;
+        CompletableFuture<Void> journaled = CompletableFuture.completedFuture(null);
+        MoveJournal.Intent intent = null;
+        if (Objects.nonNull(moveJournal) && !notYetMoved) {
+            intent = moveJournal.intent(MoveJournal.Kind.UNDO, 0, fileToMoveBack.toPath(), destinationInSource.toPath(), backupPath);
+            journaled = moveJournal.write(intent);
+        }
+        FileOperationQueue.Ticket ticket = fileOperations.submit(List.of(fileToMoveBack.toPath(), destinationInSource.toPath()),
+                "Undoing " + fileToMoveBack.getName(), timed(Metrics.Stage.UNDO, () -> {
+            if (!notYetMoved) {
+                moveFile(fileToMoveBack, destinationInSource, Metrics.Stage.UNDO);
+            }
+            if (Objects.nonNull(backupPath)) {
+                cropBackups.restore(destinationInSource);
+            }
+            if (action.wasDelete && !notYetMoved) {
+                File deleteFolder = fileToMoveBack.getParentFile();
+                if (Objects.nonNull(deleteFolder) && deleteFolder.getName().startsWith(RecycleBin.DELETE_FOLDER_PREFIX)) {
+                    File[] remainingFiles = deleteFolder.listFiles();
+                    if (Objects.nonNull(remainingFiles) && remainingFiles.length == 0) {
+                        try {
+                            Files.deleteIfExists(deleteFolder.toPath());
+                        } catch (DirectoryNotEmptyException e) {
+                            // Something was binned into it meanwhile; keep the folder.
                         }
                     }
-                    success = true;
-                } catch (IOException e) {
-                    System.err.println("Undo failed for " + fileToMoveBack.getName() + ": " + e.getMessage());
-                    JOptionPane.showMessageDialog(mainFrame, "Failed to undo move: " + e.getMessage(), "Undo Error", JOptionPane.ERROR_MESSAGE);
-                    moveHistory.push(actionToUndo);
                 }
             }
-            if (success) {
-                currentIndex = Math.max(0, currentIndex - 1);
-                updatePreview();
+        }), journaled);
+        ticket.completion().thenRun(() -> folderSuggester.fileRemoved(fileToMoveBack));
+        if (Objects.nonNull(intent)) {
+            journalOutcome(ticket, intent.id());
+            if (action.journalId > 0) {
+                ticket.completion().thenRun(() -> {
+                    if (ticket.getState() == FileOperationQueue.State.DONE) {
+                        moveJournal.markUndone(action.journalId);
+                    }
+                });
             }
-        };
-        stopPlaybackAndThen(undoAction);
+        }
+        return ticket;
     }
 
     private void nextFile() {
@@ -637,12 +1292,41 @@ public class PhotoSorterSwing {
         updatePreview();
     }
 
+    private void openFromGrid(int index) {
+        if (index == currentIndex) {
+            return;
+        }
+        releasePreviewAndThen(() -> {
+            currentIndex = index;
+            updatePreview();
+        });
+        mainFrame.requestFocusInWindow();
+    }
+
+    private void toggleGrid() {
+        thumbnailGrid.setVisible(!thumbnailGrid.isVisible());
+        previewSplitPane.resetToPreferredSizes();
+        if (thumbnailGrid.isVisible()) {
+            thumbnailGrid.showIndex(currentIndex);
+        }
+        if (Objects.nonNull(displayedFile) && isImageFile(displayedFile)) {
+            updatePreview();
+        }
+    }
+
+    private void onThumbnailsLoaded() {
+        if (Objects.nonNull(thumbnailGrid)) {
+            thumbnailGrid.thumbnailsLoaded();
+        }
+    }
+
     private void createNewFolder() {
         String folderName = JOptionPane.showInputDialog(mainFrame, "Enter new folder name: ");
         if (Objects.nonNull(folderName) && !folderName.trim().isEmpty()) {
             File newFolder = new File(currentFolder, folderName.trim());
             if (newFolder.mkdir()) {
                 JOptionPane.showMessageDialog(mainFrame, "Folder '" + folderName + "' created.", "Success", JOptionPane.INFORMATION_MESSAGE);
+                folderTree.refresh(currentFolder);
                 loadFolders(currentFolder);
             } else {
                 JOptionPane.showMessageDialog(mainFrame, "Failed to create folder or folder already exists.", "Error", JOptionPane.ERROR_MESSAGE);
@@ -651,34 +1335,18 @@ public class PhotoSorterSwing {
     }
 
     private void loadFolders(File parentFolder) {
+        long start = System.nanoTime();
         folders.clear();
-        File[] folderArray = parentFolder.listFiles(File::isDirectory);
-        if (Objects.nonNull(folderArray)) {
-            Arrays.sort(folderArray);
-            for (File folder : folderArray) {
-                if (!folder.getName().startsWith("Delete_folder_") && !folder.getName().equals("Del")) {
-                    folders.add(folder);
-                }
-            }
-        }
-        loadFolderButtons();
+        folders.addAll(folderTree.childFolders(parentFolder));
+        folderPicker.showFolders(folders, !currentFolder.equals(rootFolder));
+        Metrics.record(Metrics.Stage.FOLDER_LOAD, start, true);
     }
 
-    private void loadFolderButtons() {
-        folderButtonPanel.removeAll();
-        folderButtonPanel.setLayout(new GridLayout(0, calculateColumns(), 5, 5));
-        for (File folder : folders) {
-            JButton folderButton = new JButton(folder.getName());
-            folderButton.addActionListener(e -> selectFolder(folder));
-            folderButtonPanel.add(folderButton);
-        }
-        if (!currentFolder.equals(rootFolder)) {
-            JButton upButton = new JButton("..");
-            upButton.addActionListener(e -> goBack());
-            folderButtonPanel.add(upButton, 0);
+    private void onFolderTreeChanged(File changedFolder) {
+        folderPicker.invalidateIndex();
+        if (Objects.nonNull(currentFolder) && currentFolder.getAbsoluteFile().equals(changedFolder)) {
+            loadFolders(currentFolder);
         }
-        folderButtonPanel.revalidate();
-        folderButtonPanel.repaint();
     }
 
     private void selectFolder(File folder) {
@@ -709,25 +1377,12 @@ public class PhotoSorterSwing {
         updateFrameTitle();
     }
 
-    private File moveToBin(File file) {
-        try {
-            File mainBinDir = new File(destinationFolder, "Del");
-            if (!mainBinDir.exists() && !mainBinDir.mkdir()) {
-                System.err.println("Failed to create main bin directory: " + mainBinDir.getAbsolutePath());
-                return null;
-            }
-            File uniqueDeleteFolder = new File(mainBinDir, "Delete_folder_" + deleteIndex);
-            if (!uniqueDeleteFolder.exists() && !uniqueDeleteFolder.mkdir()) {
-                System.err.println("Failed to create unique delete directory: " + uniqueDeleteFolder.getAbsolutePath());
-                return null;
-            }
-            File targetFile = new File(uniqueDeleteFolder, file.getName());
-            Files.move(file.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            return targetFile;
-        } catch (IOException e) {
-            System.err.println("Error moving " + file.getName() + " to bin: " + e.getMessage());
+    private QueuedMove moveToBin(File file, MoveJournal.Kind kind, long batchId, Path backupPath) {
+        File targetFile = recycleBin.targetFor(file);
+        if (Objects.isNull(targetFile)) {
+            return null;
         }
-        return null;
+        return queueMove(file, targetFile, "Moving " + file.getName() + " to bin", kind, batchId, backupPath);
     }
 
     private String getFileExtension(File file) {
@@ -740,8 +1395,8 @@ public class PhotoSorterSwing {
     }
 
     private void cropPhoto() {
-        if (currentIndex < filesToSort.length) {
-            File currentImageFile = filesToSort[currentIndex];
+        if (currentIndex < filesToSort.size()) {
+            File currentImageFile = filesToSort.get(currentIndex);
             String extension = getFileExtension(currentImageFile);
             if (!Arrays.asList("jpg", "jpeg", "png").contains(extension)) {
                 JOptionPane.showMessageDialog(mainFrame, "Cropping is only supported for image files.", "Operation not supported", JOptionPane.INFORMATION_MESSAGE);
@@ -751,68 +1406,93 @@ public class PhotoSorterSwing {
                 System.err.println("Image file not found for cropping at index " + currentIndex);
                 return;
             }
-            try {
-                BufferedImage originalImage = ImageIO.read(currentImageFile);
-                if (Objects.isNull(originalImage)) {
-                    JOptionPane.showMessageDialog(mainFrame, "Could not read image for cropping.", "Error", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
-                BufferedImage croppedImage = ImageCropDialog.showCropDialog(mainFrame, originalImage);
-                if (Objects.nonNull(croppedImage)) {
-                    Path originalPath = currentImageFile.toPath();
-                    Path backupPath = Paths.get(currentImageFile.getAbsolutePath() + ".bak");
-                    if (!Files.exists(backupPath)) {
-                        Files.copy(originalPath, backupPath);
-                    }
-                    String formatName = getFileExtension(currentImageFile);
-                    if (formatName.isEmpty()) {
-                        formatName = "png";
-                    }
-                    ImageIO.write(croppedImage, formatName, currentImageFile);
-                    updatePreview();
+            long maxPixels = Runtime.getRuntime().maxMemory() / CROP_BYTES_PER_PIXEL;
+            ImageMetadataReader.Metadata metadata = ImageMetadataReader.read(currentImageFile);
+            boolean tiled = Objects.nonNull(metadata) && (long) metadata.width() * metadata.height() > maxPixels;
+            Thread decoder = new Thread(() -> {
+                try {
+                    TileSource tiles = tiled ? DecodingTileSource.open(currentImageFile) : ImagePyramid.decode(currentImageFile, maxPixels);
+                    SwingUtilities.invokeLater(() -> showCropDialog(currentImageFile, tiles));
+                } catch (IOException | RuntimeException e) {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(mainFrame,
+                            "Could not read image for cropping: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
                 }
-            } catch (IOException ex) {
-                System.err.println("Error during image cropping: " + ex.getMessage());
-                JOptionPane.showMessageDialog(mainFrame, "Error during image cropping: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }, "crop-decoder");
+            decoder.setDaemon(true);
+            decoder.start();
+        }
+    }
+
+    private void showCropDialog(File imageFile, TileSource tiles) {
+        try {
+            if (!isDisplayed(imageFile)) {
+                return;
+            }
+            ImageMetadataReader.Metadata metadata = ImageMetadataReader.read(imageFile);
+            int sourceWidth = Objects.nonNull(metadata) && metadata.width() > 0 ? metadata.displayWidth() : tiles.getWidth();
+            int sourceHeight = Objects.nonNull(metadata) && metadata.height() > 0 ? metadata.displayHeight() : tiles.getHeight();
+            Rectangle region = ImageCropDialog.showCropDialog(mainFrame, tiles, sourceWidth, sourceHeight);
+            if (Objects.nonNull(region)) {
+                queueCrop(imageFile, region);
             }
+        } finally {
+            tiles.close();
         }
     }
 
+    private void queueCrop(File imageFile, Rectangle region) {
+        Path originalPath = imageFile.toPath();
+        float quality = Float.parseFloat(System.getProperty("photosorter.cropQuality", String.valueOf(ImageCropper.DEFAULT_QUALITY)));
+        FileOperationQueue.Ticket ticket = fileOperations.submit(List.of(originalPath), "Cropping " + imageFile.getName(), () -> {
+            boolean fresh = !cropBackups.hasBackup(imageFile);
+            Path source = cropBackups.preserve(imageFile);
+            try {
+                ImageCropper.crop(source, originalPath, region, quality);
+                cropBackups.commit(imageFile);
+            } catch (IOException | RuntimeException e) {
+                if (fresh) {
+                    cropBackups.restore(imageFile);
+                }
+                throw e;
+            }
+        });
+        isCurrentPhotoCropped = true;
+        ticket.completion().thenRun(() -> SwingUtilities.invokeLater(() -> refreshCropped(imageFile)));
+    }
+
     private void undoCrop() {
-        if (currentIndex >= filesToSort.length) return;
-        File currentImageFile = filesToSort[currentIndex];
+        if (currentIndex >= filesToSort.size()) return;
+        File currentImageFile = filesToSort.get(currentIndex);
         if (Objects.isNull(currentImageFile) || !currentImageFile.exists()) {
             JOptionPane.showMessageDialog(mainFrame, "Current image file not found.", "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
-        File backupFile = new File(currentImageFile.getAbsolutePath() + ".bak");
-        if (backupFile.exists()) {
-            try {
-                Path originalPath = currentImageFile.toPath();
-                Path backupPath = backupFile.toPath();
-                Files.copy(backupPath, originalPath, StandardCopyOption.REPLACE_EXISTING);
-                Files.delete(backupPath);
-                updatePreview();
-                JOptionPane.showMessageDialog(mainFrame, "Crop operation undone.", "Undo Crop", JOptionPane.INFORMATION_MESSAGE);
-            } catch (IOException ex) {
-                System.err.println("Error undoing crop: " + ex.getMessage());
-                JOptionPane.showMessageDialog(mainFrame, "Error undoing crop: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
-        } else {
+        if (!cropBackups.hasBackup(currentImageFile)) {
             JOptionPane.showMessageDialog(mainFrame, "No crop operation to undo for this image.", "Undo Crop", JOptionPane.INFORMATION_MESSAGE);
+            return;
         }
+        FileOperationQueue.Ticket ticket = fileOperations.submit(List.of(currentImageFile.toPath()),
+                "Undoing crop of " + currentImageFile.getName(), () -> cropBackups.restore(currentImageFile));
+        ticket.completion().thenRun(() -> SwingUtilities.invokeLater(() -> {
+            if (ticket.getState() != FileOperationQueue.State.DONE) {
+                return;
+            }
+            refreshCropped(currentImageFile);
+            JOptionPane.showMessageDialog(mainFrame, "Crop operation undone.", "Undo Crop", JOptionPane.INFORMATION_MESSAGE);
+        }));
     }
 
-    private boolean currentFolderHasFolders(File currentFolder) {
-        File[] files = currentFolder.listFiles(File::isDirectory);
-        if (Objects.nonNull(files)) {
-            for (File file : files) {
-                if (!file.getName().equals("Del") && !file.getName().startsWith("Delete_folder_")) {
-                    return true;
-                }
-            }
+    private void refreshCropped(File imageFile) {
+        previewLoader.invalidate(imageFile);
+        thumbnailCache.invalidate(imageFile);
+        thumbnailGrid.refresh();
+        if (isDisplayed(imageFile)) {
+            updatePreview();
         }
-        return false;
+    }
+
+    private boolean currentFolderHasFolders(File currentFolder) {
+        return folderTree.hasChildFolders(currentFolder);
     }
 
     public void printFolderTree(File folder, String prefix) {
@@ -826,7 +1506,7 @@ public class PhotoSorterSwing {
 
         for (File file : files) {
             if (file.isDirectory()) {
-                if (!file.getName().equals("Del") && !file.getName().startsWith("Delete_folder_")) {
+                if (!FolderTree.isHiddenFolder(file.getName())) {
                     directories.add(file);
                 }
             } else {
@@ -850,36 +1530,16 @@ public class PhotoSorterSwing {
         }
     }
 
-    private int calculateColumns() {
-        int panelWidth = folderButtonPanel.getWidth();
-        if (panelWidth == 0 && folderButtonPanel.getParent() != null) {
-            panelWidth = folderButtonPanel.getParent().getWidth();
-        }
-
-        if (panelWidth == 0) panelWidth = 800;
-        int buttonWidth = 120 + 5;
-        return Math.max(1, panelWidth / buttonWidth);
-    }
-
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(BatchSorter.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
         SwingUtilities.invokeLater(PhotoSorterSwing::new);
     }
 
-    private void stopPlaybackAndThen(Runnable actionAfterStop) {
-        if (mediaPlayer != null) {
-            final MediaPlayer playerToStop = mediaPlayer;
-            mediaPlayer = null;
-            Platform.runLater(() -> {
-                if (mediaView.getMediaPlayer() == playerToStop) {
-                    mediaView.setMediaPlayer(null);
-                }
-                playerToStop.stop();
-                playerToStop.dispose();
-                SwingUtilities.invokeLater(actionAfterStop);
-            });
-        } else {
-            actionAfterStop.run();
-        }
+    private void releasePreviewAndThen(Runnable action) {
+        textPreview.close();
+        action.run();
     }
 
     public static class WrapLayout extends FlowLayout {
@@ -892,41 +1552,77 @@ public class PhotoSorterSwing {
         String title = isSource ? "Select a new source folder" : "Select a new destination folder";
         File newFolder = chooseDirectory(title);
         if (newFolder != null && newFolder.isDirectory()) {
-            stopPlayback();
+            videoPreview.releaseAll();
             if (isSource) {
                 sourceFolder = newFolder;
             } else {
                 destinationFolder = newFolder;
             }
             savePathsToConfig(sourceFolder, destinationFolder);
-            JOptionPane.showMessageDialog(mainFrame, "The path to the folder has been updated. The application will restart.", "Restart", JOptionPane.INFORMATION_MESSAGE);
-
-            mainFrame.dispose();
-            SwingUtilities.invokeLater(PhotoSorterSwing::new);
+            filesToSort.cancel();
+            if (Objects.nonNull(duplicateDetector)) {
+                duplicateDetector.cancel();
+            }
+            folderTree.close();
+            previewLoader.shutdown();
+            thumbnailCache.shutdown();
+            finishBackgroundWorkAndThen(() -> {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+                JOptionPane.showMessageDialog(mainFrame, "The path to the folder has been updated. The application will restart.", "Restart", JOptionPane.INFORMATION_MESSAGE);
+
+                mainFrame.dispose();
+                SwingUtilities.invokeLater(PhotoSorterSwing::new);
+            });
         }
     }
 
+    private void finishBackgroundWorkAndThen(Runnable onFinished) {
+        JProgressBar progress = new JProgressBar();
+        progress.setIndeterminate(true);
+        progress.setStringPainted(true);
+        progress.setString("Finishing " + fileOperations.getPendingCount() + " file operations...");
+        JDialog dialog = new JDialog(mainFrame, "Please wait", true);
+        dialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+        dialog.add(progress);
+        dialog.setSize(360, 80);
+        dialog.setLocationRelativeTo(mainFrame);
+        Thread finisher = new Thread(() -> {
+            finishBackgroundWork();
+            SwingUtilities.invokeLater(() -> {
+                dialog.dispose();
+                onFinished.run();
+            });
+        }, "photo-sorter-finish");
+        finisher.setDaemon(true);
+        finisher.start();
+        dialog.setVisible(true);
+    }
+
     private Path getConfigFilePath() {
         if (configFilePath == null) {
-            String appDataPath = System.getenv("APPDATA");
-            if (appDataPath == null || appDataPath.isEmpty()) {
-                appDataPath = System.getProperty("user.home");
-            }
-            Path configDir = Paths.get(appDataPath, "PhotoSorter");
-            try {
-                if (!Files.exists(configDir)) {
-                    Files.createDirectories(configDir);
-                }
-            } catch (IOException e) {
-                System.err.println("Unable to create configuration directory: " + configDir);
-                e.printStackTrace();
-                return Paths.get("folders.txt");
-            }
-            configFilePath = configDir.resolve("folders.txt");
+            configFilePath = defaultConfigFilePath();
         }
         return configFilePath;
     }
 
+    static Path defaultConfigFilePath() {
+        String appDataPath = System.getenv("APPDATA");
+        if (appDataPath == null || appDataPath.isEmpty()) {
+            appDataPath = System.getProperty("user.home");
+        }
+        Path configDir = Paths.get(appDataPath, "PhotoSorter");
+        try {
+            if (!Files.exists(configDir)) {
+                Files.createDirectories(configDir);
+            }
+        } catch (IOException e) {
+            System.err.println("Unable to create configuration directory: " + configDir);
+            e.printStackTrace();
+            return Paths.get("folders.txt");
+        }
+        return configDir.resolve("folders.txt");
+    }
+
     private void savePathsToConfig(File source, File destination) {
         Path configFile = getConfigFilePath();
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(configFile.toFile()))) {
@@ -0,0 +1,87 @@
+package ua.shiningpr1sm.photosorter;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.function.IntBinaryOperator;
+
+public final class PreviewDecoder {
+    private static final int OVERSAMPLING = 2;
+
+    public record Result(BufferedImage image, int sourceWidth, int sourceHeight) {
+    }
+
+    private PreviewDecoder() {
+    }
+
+    public static Result decode(File file, int maxWidth, int maxHeight) throws IOException {
+        return decode(file, (width, height) -> subsamplingFactor(width, height, maxWidth, maxHeight));
+    }
+
+    public static Result decodeWithin(File file, long maxPixels) throws IOException {
+        return decode(file, (width, height) -> subsamplingFactor(width, height, maxPixels));
+    }
+
+    private static Result decode(File file, IntBinaryOperator factorForSize) throws IOException {
+        long start = System.nanoTime();
+        boolean decoded = false;
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            if (input == null) {
+                throw new IOException("Could not open image file: " + file.getAbsolutePath());
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Could not read image file: " + file.getAbsolutePath());
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                int factor = factorForSize.applyAsInt(sourceWidth, sourceHeight);
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (factor > 1) {
+                    param.setSourceSubsampling(factor, factor, 0, 0);
+                }
+                BufferedImage image = reader.read(0, param);
+                if (image == null) {
+                    throw new IOException("Could not read image file: " + file.getAbsolutePath());
+                }
+                decoded = true;
+                return new Result(image, sourceWidth, sourceHeight);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            Metrics.record(Metrics.Stage.DECODE, start, decoded);
+        }
+    }
+
+    public static int subsamplingFactor(int imageWidth, int imageHeight, int maxWidth, int maxHeight) {
+        if (imageWidth <= 0 || imageHeight <= 0 || maxWidth <= 0 || maxHeight <= 0) {
+            return 1;
+        }
+        double shrink = Math.max((double) imageWidth / maxWidth, (double) imageHeight / maxHeight);
+        return Math.max(1, (int) Math.floor(shrink / OVERSAMPLING));
+    }
+
+    public static int subsamplingFactor(int imageWidth, int imageHeight, long maxPixels) {
+        if (imageWidth <= 0 || imageHeight <= 0 || maxPixels <= 0) {
+            return 1;
+        }
+        int factor = 1;
+        while ((long) ceilDiv(imageWidth, factor) * ceilDiv(imageHeight, factor) > maxPixels) {
+            factor++;
+        }
+        return factor;
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,32 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.io.File;
+
+public class RecycleBin {
+    public static final String BIN_FOLDER = "Del";
+    public static final String DELETE_FOLDER_PREFIX = "Delete_folder_";
+
+    private final File mainBinDir;
+    private final File uniqueDeleteFolder;
+
+    public RecycleBin(File destinationRoot, String deleteIndex) {
+        this.mainBinDir = new File(destinationRoot, BIN_FOLDER);
+        this.uniqueDeleteFolder = new File(mainBinDir, DELETE_FOLDER_PREFIX + deleteIndex);
+    }
+
+    public File getFolder() {
+        return uniqueDeleteFolder;
+    }
+
+    public synchronized File targetFor(File file) {
+        if (!mainBinDir.exists() && !mainBinDir.mkdir() && !mainBinDir.isDirectory()) {
+            System.err.println("Failed to create main bin directory: " + mainBinDir.getAbsolutePath());
+            return null;
+        }
+        if (!uniqueDeleteFolder.exists() && !uniqueDeleteFolder.mkdir() && !uniqueDeleteFolder.isDirectory()) {
+            System.err.println("Failed to create unique delete directory: " + uniqueDeleteFolder.getAbsolutePath());
+            return null;
+        }
+        return new File(uniqueDeleteFolder, file.getName());
+    }
+}
@@ -0,0 +1,133 @@
+package ua.shiningpr1sm.photosorter;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.IntSupplier;
+
+public class SourceFileQueue {
+    private static final Set<String> SUPPORTED_EXTENSIONS = Set.of("jpg", "png", "jpeg", "txt", "mp4", "m4v", "m4a");
+    private static final int MAX_BATCH_SIZE = 4096;
+    private static final long MAX_BATCH_NANOS = 100_000_000L;
+
+    private final List<File> files = new ArrayList<>();
+    private final Set<File> inserted = new HashSet<>();
+    private final IntSupplier cursor;
+    private final Runnable onChange;
+    private volatile boolean cancelled;
+    private boolean complete;
+
+    public SourceFileQueue(IntSupplier cursor, Runnable onChange) {
+        this.cursor = cursor;
+        this.onChange = onChange;
+    }
+
+    public static boolean isSupported(String name) {
+        int lastDot = name.lastIndexOf('.');
+        return lastDot >= 0 && SUPPORTED_EXTENSIONS.contains(name.substring(lastDot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    public void start(File folder) {
+        Thread scanner = new Thread(() -> scan(folder.toPath()), "source-scanner");
+        scanner.setDaemon(true);
+        scanner.start();
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public int size() {
+        return files.size();
+    }
+
+    public File get(int index) {
+        return files.get(index);
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void insert(int index, List<File> restored) {
+        for (File file : restored) {
+            inserted.add(file);
+            if (!files.contains(file)) {
+                files.add(Math.min(index++, files.size()), file);
+            }
+        }
+    }
+
+    private void scan(Path folder) {
+        List<File> batch = new ArrayList<>();
+        long start = System.nanoTime();
+        long batchStart = start;
+        boolean listed = false;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path path : stream) {
+                if (cancelled) {
+                    return;
+                }
+                Path fileName = path.getFileName();
+                if (fileName == null || !isSupported(fileName.toString())) {
+                    continue;
+                }
+                batch.add(path.toFile());
+                if (batch.size() >= MAX_BATCH_SIZE || System.nanoTime() - batchStart >= MAX_BATCH_NANOS) {
+                    publish(batch, false);
+                    batch = new ArrayList<>();
+                    batchStart = System.nanoTime();
+                }
+            }
+            listed = true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error listing source folder " + folder + ": " + e.getMessage());
+        }
+        Metrics.record(Metrics.Stage.ENUMERATE, start, listed);
+        publish(batch, true);
+    }
+
+    private void publish(List<File> batch, boolean last) {
+        Collections.sort(batch);
+        SwingUtilities.invokeLater(() -> {
+            if (cancelled) {
+                return;
+            }
+            merge(batch);
+            complete = last;
+            onChange.run();
+        });
+    }
+
+    private void merge(List<File> batch) {
+        if (!inserted.isEmpty()) {
+            batch.removeIf(inserted::contains);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        int protectedPrefix = Math.min(files.size(), Math.max(0, cursor.getAsInt() + 1));
+        List<File> tail = new ArrayList<>(files.subList(protectedPrefix, files.size()));
+        files.subList(protectedPrefix, files.size()).clear();
+        int i = 0;
+        int j = 0;
+        while (i < tail.size() && j < batch.size()) {
+            if (tail.get(i).compareTo(batch.get(j)) <= 0) {
+                files.add(tail.get(i++));
+            } else {
+                files.add(batch.get(j++));
+            }
+        }
+        files.addAll(tail.subList(i, tail.size()));
+        files.addAll(batch.subList(j, batch.size()));
+    }
+}
@@ -0,0 +1,336 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class TextFileWindow implements Closeable {
+    private static final int SAMPLE_BYTES = 64 * 1024;
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+    private static final int MAX_PAGE_BYTES = 1024 * 1024;
+    private static final long MAP_WINDOW = 4L * 1024 * 1024;
+    private static final long INDEX_CHUNK = 16L * 1024 * 1024;
+    private static final int MAX_CHECKPOINTS = 16 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final Charset charset;
+    private final long dataStart;
+    private final int unit;
+    private final boolean bigEndian;
+    private MappedByteBuffer window;
+    private long windowStart = -1;
+
+    private final Object indexLock = new Object();
+    private long[] checkpoints = new long[64];
+    private int checkpointCount;
+    private int checkpointStride = 1024;
+    private volatile long indexedBytes;
+    private volatile long indexedLines;
+    private volatile boolean indexComplete;
+    private volatile boolean closed;
+
+    public record Page(String text, long start, long end, int lines) {
+    }
+
+    private TextFileWindow(FileChannel channel, long size, Charset charset, long dataStart, int unit, boolean bigEndian) {
+        this.channel = channel;
+        this.size = size;
+        this.charset = charset;
+        this.dataStart = dataStart;
+        this.unit = unit;
+        this.bigEndian = bigEndian;
+        this.checkpoints[0] = dataStart;
+        this.checkpointCount = 1;
+        this.indexedBytes = dataStart;
+    }
+
+    public static TextFileWindow open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            ByteBuffer sample = ByteBuffer.allocate((int) Math.min(SAMPLE_BYTES, size));
+            int read = 0;
+            while (sample.hasRemaining() && read >= 0) {
+                read = channel.read(sample, sample.position());
+            }
+            byte[] bytes = Arrays.copyOf(sample.array(), sample.position());
+            if (startsWith(bytes, 0xEF, 0xBB, 0xBF)) {
+                return new TextFileWindow(channel, size, StandardCharsets.UTF_8, 3, 1, false);
+            } else if (startsWith(bytes, 0xFF, 0xFE)) {
+                return new TextFileWindow(channel, size, StandardCharsets.UTF_16LE, 2, 2, false);
+            } else if (startsWith(bytes, 0xFE, 0xFF)) {
+                return new TextFileWindow(channel, size, StandardCharsets.UTF_16BE, 2, 2, true);
+            }
+            int evenZeros = 0;
+            int oddZeros = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] == 0) {
+                    if ((i & 1) == 0) {
+                        evenZeros++;
+                    } else {
+                        oddZeros++;
+                    }
+                }
+            }
+            if (bytes.length >= 4 && oddZeros > bytes.length / 4 && evenZeros < oddZeros / 8) {
+                return new TextFileWindow(channel, size, StandardCharsets.UTF_16LE, 0, 2, false);
+            } else if (bytes.length >= 4 && evenZeros > bytes.length / 4 && oddZeros < evenZeros / 8) {
+                return new TextFileWindow(channel, size, StandardCharsets.UTF_16BE, 0, 2, true);
+            }
+            Charset platform = Charset.defaultCharset();
+            Charset fallback = platform.equals(StandardCharsets.UTF_8) || platform.equals(StandardCharsets.US_ASCII) ? StandardCharsets.ISO_8859_1 : platform;
+            return new TextFileWindow(channel, size, isUtf8(bytes, size > bytes.length) ? StandardCharsets.UTF_8 : fallback, 0, 1, false);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long dataStart() {
+        return dataStart;
+    }
+
+    public long nextLineStart(long offset) {
+        long limit = Math.min(size, offset + MAX_LINE_BYTES);
+        for (long position = offset; position + unit <= limit; position += unit) {
+            if (isNewline(position)) {
+                return position + unit;
+            }
+        }
+        if (limit >= size) {
+            return size;
+        }
+        long breakAt = align(limit);
+        if (unit == 1 && charset.equals(StandardCharsets.UTF_8)) {
+            while (breakAt > offset + 1 && (byteAt(breakAt) & 0xC0) == 0x80) {
+                breakAt--;
+            }
+        }
+        return breakAt;
+    }
+
+    public long lineStartAtOrBefore(long offset) {
+        long position = align(Math.max(dataStart, Math.min(offset, size)));
+        long lower = Math.max(dataStart, position - MAX_LINE_BYTES);
+        while (position - unit >= lower) {
+            if (isNewline(position - unit)) {
+                return position;
+            }
+            position -= unit;
+        }
+        return position;
+    }
+
+    public long previousLineStart(long lineStart) {
+        if (lineStart <= dataStart) {
+            return dataStart;
+        }
+        return lineStartAtOrBefore(lineStart - unit);
+    }
+
+    public Page read(long start, int maxLines) throws IOException {
+        long end = start;
+        int lines = 0;
+        while (lines < maxLines && end < size && end - start < MAX_PAGE_BYTES) {
+            end = nextLineStart(end);
+            lines++;
+        }
+        if (end == start) {
+            return new Page("", start, end, 0);
+        }
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = decoder.decode(bytes);
+        String text = chars.toString().replace("\r\n", "\n");
+        return new Page(text, start, end, lines);
+    }
+
+    public void buildLineIndex(Runnable onProgress) {
+        try {
+            long position = dataStart;
+            long lines = 0;
+            long sinceCheckpoint = 0;
+            while (position < size && !closed) {
+                long chunkEnd = Math.min(size, position + INDEX_CHUNK);
+                long mapEnd = Math.min(size, chunkEnd + unit - 1);
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, mapEnd - position);
+                int limit = (int) (chunkEnd - position);
+                for (int i = 0; i + unit <= chunk.limit() && i < limit; i += unit) {
+                    if (isNewline(chunk, i)) {
+                        lines++;
+                        if (++sinceCheckpoint == checkpointStride) {
+                            sinceCheckpoint = 0;
+                            addCheckpoint(position + i + unit, lines);
+                        }
+                    }
+                }
+                position = chunkEnd;
+                indexedLines = lines;
+                indexedBytes = position;
+                onProgress.run();
+            }
+            indexComplete = !closed;
+            onProgress.run();
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("Error indexing text file lines: " + e.getMessage());
+            }
+        }
+    }
+
+    public long lineNumberAt(long offset) {
+        if (offset > indexedBytes) {
+            return -1;
+        }
+        long checkpoint;
+        long line;
+        synchronized (indexLock) {
+            int low = 0;
+            int high = checkpointCount - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (checkpoints[middle] <= offset) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            checkpoint = checkpoints[low];
+            line = (long) low * checkpointStride;
+        }
+        for (long position = checkpoint; position + unit <= offset; position += unit) {
+            if (isNewline(position)) {
+                line++;
+            }
+        }
+        return line + 1;
+    }
+
+    public long getIndexedLines() {
+        return indexedLines;
+    }
+
+    public long getIndexedBytes() {
+        return indexedBytes;
+    }
+
+    public boolean isIndexComplete() {
+        return indexComplete;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        window = null;
+        channel.close();
+    }
+
+    private void addCheckpoint(long offset, long lines) {
+        synchronized (indexLock) {
+            if (checkpointCount == MAX_CHECKPOINTS) {
+                for (int i = 0; i < checkpointCount / 2; i++) {
+                    checkpoints[i] = checkpoints[i * 2];
+                }
+                checkpointCount /= 2;
+                checkpointStride *= 2;
+                if (lines % checkpointStride != 0) {
+                    return;
+                }
+            }
+            if (checkpointCount == checkpoints.length) {
+                checkpoints = Arrays.copyOf(checkpoints, Math.min(MAX_CHECKPOINTS, checkpoints.length * 2));
+            }
+            checkpoints[checkpointCount++] = offset;
+        }
+    }
+
+    private boolean isNewline(long position) {
+        if (unit == 1) {
+            return byteAt(position) == '\n';
+        }
+        byte first = byteAt(position);
+        byte second = byteAt(position + 1);
+        return bigEndian ? first == 0 && second == '\n' : first == '\n' && second == 0;
+    }
+
+    private boolean isNewline(ByteBuffer buffer, int index) {
+        if (unit == 1) {
+            return buffer.get(index) == '\n';
+        }
+        byte first = buffer.get(index);
+        byte second = buffer.get(index + 1);
+        return bigEndian ? first == 0 && second == '\n' : first == '\n' && second == 0;
+    }
+
+    private byte byteAt(long position) {
+        if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+            windowStart = Math.max(0, Math.min(position - MAP_WINDOW / 2, size - MAP_WINDOW));
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(MAP_WINDOW, size - windowStart));
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not map text file: " + e.getMessage(), e);
+            }
+        }
+        return window.get((int) (position - windowStart));
+    }
+
+    private long align(long offset) {
+        return dataStart + ((offset - dataStart) / unit) * unit;
+    }
+
+    private static boolean startsWith(byte[] bytes, int... prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((bytes[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isUtf8(byte[] sample, boolean truncated) {
+        int length = sample.length;
+        if (truncated) {
+            int cut = length;
+            while (cut > 0 && length - cut < 3 && (sample[cut - 1] & 0xC0) == 0x80) {
+                cut--;
+            }
+            if (cut > 0 && (sample[cut - 1] & 0xC0) == 0xC0) {
+                length = cut - 1;
+            }
+        }
+        try {
+            StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(sample, 0, length));
+            return true;
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package ua.shiningpr1sm.photosorter;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+public class ThumbnailCache {
+    public static final int THUMBNAIL_SIZE = 128;
+    private static final int SHARD_HEX_DIGITS = 2;
+    private static final long DEFAULT_MAX_DISK_BYTES = 512L * 1024 * 1024;
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png");
+    private static final Set<String> VIDEO_EXTENSIONS = Set.of("mp4", "m4v", "m4a");
+
+    private final Path directory;
+    private final FolderIndex folderIndex;
+    private final Runnable onLoaded;
+    private final ImageCache<String> memory;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> requested = ConcurrentHashMap.newKeySet();
+    private final Map<String, Boolean> unavailable = new ConcurrentHashMap<>();
+    private volatile Predicate<File> wanted = file -> true;
+
+    public ThumbnailCache(Path directory, FolderIndex folderIndex, int threads, long memoryBytes, Runnable onLoaded) {
+        this.directory = directory;
+        this.folderIndex = folderIndex;
+        this.onLoaded = onLoaded;
+        this.memory = new ImageCache<>(memoryBytes);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new NewestFirstQueue(), runnable -> {
+            Thread thread = new Thread(runnable, "thumbnail-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        Thread trimmer = new Thread(() -> trim(Long.getLong("photosorter.thumbnailCacheBytes", DEFAULT_MAX_DISK_BYTES)), "thumbnail-trim");
+        trimmer.setDaemon(true);
+        trimmer.start();
+    }
+
+    public BufferedImage get(File file) {
+        return memory.get(file.getAbsolutePath());
+    }
+
+    public boolean isUnavailable(File file) {
+        return unavailable.containsKey(file.getAbsolutePath());
+    }
+
+    public void request(File file) {
+        String path = file.getAbsolutePath();
+        if (unavailable.containsKey(path) || !requested.add(path)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                if (!wanted.test(file)) {
+                    return;
+                }
+                BufferedImage thumbnail = load(file);
+                if (thumbnail != null) {
+                    memory.put(path, thumbnail);
+                } else {
+                    unavailable.put(path, Boolean.TRUE);
+                }
+                SwingUtilities.invokeLater(onLoaded);
+            } catch (RuntimeException e) {
+                unavailable.put(path, Boolean.TRUE);
+                System.err.println("Could not create thumbnail for " + path + ": " + e.getMessage());
+            } finally {
+                requested.remove(path);
+            }
+        });
+    }
+
+    public void setWanted(Predicate<File> wanted) {
+        this.wanted = wanted;
+    }
+
+    public void invalidate(File file) {
+        String path = file.getAbsolutePath();
+        memory.removeIf(key -> key.equals(path));
+        unavailable.remove(path);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        memory.clear();
+    }
+
+    private BufferedImage load(File file) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        Path stored = shardPath(file, attributes);
+        if (Files.isRegularFile(stored)) {
+            try {
+                BufferedImage image = ImageIO.read(stored.toFile());
+                if (image != null) {
+                    return image;
+                }
+            } catch (IOException e) {
+                System.err.println("Discarding unreadable thumbnail " + stored + ": " + e.getMessage());
+            }
+        }
+        BufferedImage thumbnail = generate(file);
+        if (thumbnail != null) {
+            store(stored, thumbnail);
+        }
+        return thumbnail;
+    }
+
+    private BufferedImage generate(File file) {
+        String extension = extension(file);
+        if (VIDEO_EXTENSIONS.contains(extension)) {
+            BufferedImage cover = Mp4CoverArtReader.read(file);
+            return cover != null ? ImageScaler.scaleToFit(cover, THUMBNAIL_SIZE, THUMBNAIL_SIZE, ImageScaler.Quality.BALANCED) : null;
+        }
+        if (!IMAGE_EXTENSIONS.contains(extension)) {
+            return null;
+        }
+        FolderIndex.Entry indexed = folderIndex != null ? folderIndex.lookup(file) : null;
+        BufferedImage source = indexed != null ? FolderIndex.decodeThumbnail(indexed) : null;
+        int orientation = 1;
+        if (source == null) {
+            ImageMetadataReader.Metadata metadata = ImageMetadataReader.read(file);
+            orientation = metadata != null ? metadata.orientation() : 1;
+            source = EmbeddedThumbnailReader.read(file);
+        }
+        if (source == null) {
+            try {
+                source = PreviewDecoder.decode(file, THUMBNAIL_SIZE, THUMBNAIL_SIZE).image();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return ImageScaler.scaleToFit(source, THUMBNAIL_SIZE, THUMBNAIL_SIZE, ImageScaler.Quality.BALANCED, orientation);
+    }
+
+    private void store(Path target, BufferedImage thumbnail) {
+        Path temp = target.resolveSibling(target.getFileName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            Files.createDirectories(target.getParent());
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                ImageIO.write(FolderIndex.toRgb(thumbnail), "jpg", output);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not store thumbnail " + target + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Left for the next trim.
+            }
+        }
+    }
+
+    private Path shardPath(File file, BasicFileAttributes attributes) {
+        String key = file.getAbsolutePath() + "|" + attributes.size() + "|" + attributes.lastModifiedTime().toMillis();
+        String hex = HexFormat.of().formatHex(sha1(key.getBytes(StandardCharsets.UTF_8)));
+        return directory.resolve(hex.substring(0, SHARD_HEX_DIGITS)).resolve(hex.substring(SHARD_HEX_DIGITS) + ".jpg");
+    }
+
+    private void trim(long maxBytes) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        record Stored(Path path, long size, long lastModified) {
+        }
+        List<Stored> files = new ArrayList<>();
+        long[] total = {0};
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    files.add(new Stored(file, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                    total[0] += attrs.size();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Could not scan thumbnail cache " + directory + ": " + e.getMessage());
+            return;
+        }
+        if (total[0] <= maxBytes) {
+            return;
+        }
+        files.sort(Comparator.comparingLong(Stored::lastModified));
+        for (Stored stored : files) {
+            if (total[0] <= maxBytes * 3 / 4) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(stored.path());
+                total[0] -= stored.size();
+            } catch (IOException e) {
+                // Still being written or read; try again next start.
+            }
+        }
+    }
+
+    private static byte[] sha1(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String extension(File file) {
+        String name = file.getName();
+        int lastDot = name.lastIndexOf('.');
+        return lastDot >= 0 ? name.substring(lastDot + 1).toLowerCase() : "";
+    }
+
+    private static final class NewestFirstQueue extends LinkedBlockingDeque<Runnable> {
+        @Override
+        public boolean offer(Runnable runnable) {
+            return offerFirst(runnable);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package ua.shiningpr1sm.photosorter;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+public class ThumbnailGrid extends JPanel {
+    private static final int CELL_WIDTH = ThumbnailCache.THUMBNAIL_SIZE + 16;
+    private static final int CELL_HEIGHT = ThumbnailCache.THUMBNAIL_SIZE + 30;
+    private static final int COLUMNS = 2;
+    private static final int PREFETCH_ROWS = 4;
+    private static final Color HANDLED_OVERLAY = new Color(255, 255, 255, 150);
+    private static final Color PLACEHOLDER_BACKGROUND = new Color(225, 225, 225);
+
+    private final SourceFileQueue files;
+    private final ThumbnailCache thumbnails;
+    private final IntSupplier currentIndex;
+    private final FileListModel model = new FileListModel();
+    private final JList<File> list = new JList<>(model);
+
+    public ThumbnailGrid(SourceFileQueue files, ThumbnailCache thumbnails, IntSupplier currentIndex, IntConsumer onOpen,
+                         Runnable onSelectionChanged) {
+        super(new BorderLayout());
+        this.files = files;
+        this.thumbnails = thumbnails;
+        this.currentIndex = currentIndex;
+
+        list.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        list.setVisibleRowCount(-1);
+        list.setFixedCellWidth(CELL_WIDTH);
+        list.setFixedCellHeight(CELL_HEIGHT);
+        list.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        list.setFocusable(false);
+        list.setCellRenderer(new ThumbnailCellRenderer());
+        list.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                onSelectionChanged.run();
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = list.locationToIndex(e.getPoint());
+                Rectangle bounds = index >= 0 ? list.getCellBounds(index, index) : null;
+                if (SwingUtilities.isLeftMouseButton(e) && !e.isShiftDown() && !e.isControlDown() && !e.isMetaDown()
+                        && bounds != null && bounds.contains(e.getPoint())) {
+                    onOpen.accept(index);
+                }
+            }
+        });
+
+        JScrollPane scrollPane = new JScrollPane(list, ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS,
+                ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(CELL_HEIGHT / 4);
+        scrollPane.getViewport().addChangeListener(e -> updateWanted());
+        int scrollBarWidth = scrollPane.getVerticalScrollBar().getPreferredSize().width;
+        setPreferredSize(new Dimension(CELL_WIDTH * COLUMNS + scrollBarWidth + 4, 0));
+        add(scrollPane, BorderLayout.CENTER);
+    }
+
+    public void refresh() {
+        model.refresh();
+        updateWanted();
+    }
+
+    public void showIndex(int index) {
+        if (index >= 0 && index < model.getSize()) {
+            list.setSelectedIndex(index);
+            list.ensureIndexIsVisible(index);
+        } else {
+            list.clearSelection();
+        }
+        list.repaint();
+    }
+
+    public int[] getSelectedIndices() {
+        return list.getSelectedIndices();
+    }
+
+    public void extendSelection(int delta) {
+        int anchor = currentIndex.getAsInt();
+        if (anchor >= model.getSize()) {
+            return;
+        }
+        int lead = Math.max(anchor, list.getMaxSelectionIndex());
+        int newLead = Math.max(anchor, Math.min(model.getSize() - 1, lead + delta));
+        list.setSelectionInterval(anchor, newLead);
+        list.ensureIndexIsVisible(newLead);
+    }
+
+    public void thumbnailsLoaded() {
+        list.repaint();
+    }
+
+    private void updateWanted() {
+        int first = list.getFirstVisibleIndex();
+        int last = list.getLastVisibleIndex();
+        if (first < 0) {
+            return;
+        }
+        int columns = Math.max(1, list.getWidth() / CELL_WIDTH);
+        int from = Math.max(0, first - PREFETCH_ROWS * columns);
+        int to = Math.min(files.size() - 1, last + PREFETCH_ROWS * columns);
+        Set<File> wanted = new HashSet<>();
+        for (int i = from; i <= to; i++) {
+            wanted.add(files.get(i));
+        }
+        thumbnails.setWanted(wanted::contains);
+        for (int i = to; i > last; i--) {
+            requestMissing(files.get(i));
+        }
+        for (int i = from; i < first; i++) {
+            requestMissing(files.get(i));
+        }
+        for (int i = last; i >= first; i--) {
+            requestMissing(files.get(i));
+        }
+    }
+
+    private void requestMissing(File file) {
+        if (thumbnails.get(file) == null) {
+            thumbnails.request(file);
+        }
+    }
+
+    private class FileListModel extends AbstractListModel<File> {
+        private int size;
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public File getElementAt(int index) {
+            return files.get(index);
+        }
+
+        private void refresh() {
+            int previous = size;
+            size = files.size();
+            if (size > previous) {
+                fireIntervalAdded(this, previous, size - 1);
+            } else if (size < previous) {
+                fireIntervalRemoved(this, size, previous - 1);
+            }
+            if (size > 0) {
+                fireContentsChanged(this, 0, size - 1);
+            }
+        }
+    }
+
+    private class ThumbnailCellRenderer extends JComponent implements ListCellRenderer<File> {
+        private File file;
+        private boolean selected;
+        private boolean handled;
+
+        @Override
+        public Component getListCellRendererComponent(JList<? extends File> list, File value, int index, boolean isSelected, boolean cellHasFocus) {
+            file = value;
+            selected = isSelected;
+            handled = index < currentIndex.getAsInt();
+            return this;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            long start = System.nanoTime();
+            Graphics2D g2d = (Graphics2D) g;
+            int width = getWidth();
+            int size = ThumbnailCache.THUMBNAIL_SIZE;
+            int boxX = (width - size) / 2;
+            int boxY = 4;
+            g2d.setColor(selected ? list.getSelectionBackground() : list.getBackground());
+            g2d.fillRect(0, 0, width, getHeight());
+            BufferedImage thumbnail = thumbnails.get(file);
+            if (thumbnail != null) {
+                g2d.drawImage(thumbnail, boxX + (size - thumbnail.getWidth()) / 2, boxY + (size - thumbnail.getHeight()) / 2, null);
+            } else {
+                g2d.setColor(PLACEHOLDER_BACKGROUND);
+                g2d.fillRect(boxX, boxY, size, size);
+                String label = thumbnails.isUnavailable(file) ? extensionLabel(file) : "...";
+                g2d.setColor(Color.GRAY);
+                FontMetrics metrics = g2d.getFontMetrics();
+                g2d.drawString(label, boxX + (size - metrics.stringWidth(label)) / 2, boxY + size / 2 + metrics.getAscent() / 2);
+            }
+            g2d.setColor(selected ? list.getSelectionForeground() : list.getForeground());
+            FontMetrics metrics = g2d.getFontMetrics();
+            String name = elide(file.getName(), metrics, width - 8);
+            g2d.drawString(name, (width - metrics.stringWidth(name)) / 2, boxY + size + 4 + metrics.getAscent());
+            if (handled && !selected) {
+                g2d.setColor(HANDLED_OVERLAY);
+                g2d.fillRect(0, 0, width, getHeight());
+            }
+            Metrics.record(Metrics.Stage.PAINT, start, true);
+        }
+
+        private String extensionLabel(File file) {
+            String name = file.getName();
+            int lastDot = name.lastIndexOf('.');
+            return lastDot >= 0 ? name.substring(lastDot + 1).toUpperCase() : "?";
+        }
+
+        private String elide(String text, FontMetrics metrics, int maxWidth) {
+            if (metrics.stringWidth(text) <= maxWidth) {
+                return text;
+            }
+            String ellipsis = "...";
+            int end = text.length();
+            while (end > 0 && metrics.stringWidth(text.substring(0, end)) + metrics.stringWidth(ellipsis) > maxWidth) {
+                end--;
+            }
+            return text.substring(0, end) + ellipsis;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.nio.charset.StandardCharsets;
+
+final class TiffReader {
+    static final int TYPE_ASCII = 2;
+    static final int TYPE_SHORT = 3;
+    static final int TYPE_LONG = 4;
+
+    private static final int[] TYPE_SIZES = {0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8};
+
+    private final byte[] data;
+    private final int base;
+    private final int limit;
+    private final boolean littleEndian;
+
+    record Entry(int tag, int type, int count, int valueOffset) {
+    }
+
+    interface EntryVisitor {
+        void visit(Entry entry);
+    }
+
+    private TiffReader(byte[] data, int base, int limit, boolean littleEndian) {
+        this.data = data;
+        this.base = base;
+        this.limit = limit;
+        this.littleEndian = littleEndian;
+    }
+
+    static TiffReader open(byte[] data, int base, int limit) {
+        if (base < 0 || base + 8 > limit || limit > data.length) {
+            return null;
+        }
+        boolean littleEndian;
+        if (data[base] == 'I' && data[base + 1] == 'I') {
+            littleEndian = true;
+        } else if (data[base] == 'M' && data[base + 1] == 'M') {
+            littleEndian = false;
+        } else {
+            return null;
+        }
+        TiffReader reader = new TiffReader(data, base, limit, littleEndian);
+        return reader.u16(2) == 42 ? reader : null;
+    }
+
+    int base() {
+        return base;
+    }
+
+    boolean isLittleEndian() {
+        return littleEndian;
+    }
+
+    int firstIfdOffset() {
+        return u32(4);
+    }
+
+    int nextIfdOffset(int ifdOffset) {
+        int count = u16(ifdOffset);
+        if (count < 0) {
+            return 0;
+        }
+        int next = u32(ifdOffset + 2 + count * 12);
+        return Math.max(next, 0);
+    }
+
+    void forEachEntry(int ifdOffset, EntryVisitor visitor) {
+        int count = u16(ifdOffset);
+        for (int i = 0; i < count; i++) {
+            int position = ifdOffset + 2 + i * 12;
+            int tag = u16(position);
+            int type = u16(position + 2);
+            int valueCount = u32(position + 4);
+            if (tag < 0 || type < 0 || valueCount < 0) {
+                return;
+            }
+            int typeSize = type < TYPE_SIZES.length ? TYPE_SIZES[type] : 0;
+            long byteCount = (long) typeSize * valueCount;
+            int valueOffset = byteCount <= 4 ? position + 8 : u32(position + 8);
+            visitor.visit(new Entry(tag, type, valueCount, valueOffset));
+        }
+    }
+
+    int intValue(Entry entry) {
+        return switch (entry.type()) {
+            case TYPE_SHORT -> u16(entry.valueOffset());
+            case TYPE_LONG -> u32(entry.valueOffset());
+            default -> -1;
+        };
+    }
+
+    String asciiValue(Entry entry) {
+        if (entry.type() != TYPE_ASCII || !contains(entry.valueOffset(), entry.count())) {
+            return null;
+        }
+        int start = base + entry.valueOffset();
+        int end = start;
+        while (end < start + entry.count() && data[end] != 0) {
+            end++;
+        }
+        return new String(data, start, end - start, StandardCharsets.US_ASCII).trim();
+    }
+
+    boolean contains(int offset, int length) {
+        return offset >= 0 && length >= 0 && (long) base + offset + length <= limit;
+    }
+
+    int u16(int offset) {
+        if (!contains(offset, 2)) {
+            return -1;
+        }
+        int b0 = data[base + offset] & 0xFF;
+        int b1 = data[base + offset + 1] & 0xFF;
+        return littleEndian ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    int u32(int offset) {
+        if (!contains(offset, 4)) {
+            return -1;
+        }
+        int p = base + offset;
+        long value;
+        if (littleEndian) {
+            value = (data[p] & 0xFFL) | (data[p + 1] & 0xFFL) << 8 | (data[p + 2] & 0xFFL) << 16 | (data[p + 3] & 0xFFL) << 24;
+        } else {
+            value = (data[p] & 0xFFL) << 24 | (data[p + 1] & 0xFFL) << 16 | (data[p + 2] & 0xFFL) << 8 | (data[p + 3] & 0xFFL);
+        }
+        return value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+}
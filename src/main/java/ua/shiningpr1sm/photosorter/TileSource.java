@@ -0,0 +1,29 @@
+package ua.shiningpr1sm.photosorter;
+
+import java.awt.image.BufferedImage;
+
+public interface TileSource {
+    int TILE_SIZE = 256;
+
+    int getWidth();
+
+    int getHeight();
+
+    int getLevelCount();
+
+    int getLevelWidth(int level);
+
+    int getLevelHeight(int level);
+
+    BufferedImage getTile(int level, int column, int row);
+
+    default BufferedImage peekTile(int level, int column, int row) {
+        return getTile(level, column, row);
+    }
+
+    default void setTileListener(Runnable listener) {
+    }
+
+    default void close() {
+    }
+}
@@ -0,0 +1,241 @@
+package ua.shiningpr1sm.photosorter;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+
+public class TileViewer extends JPanel {
+    private static final Color MISSING_TILE = new Color(60, 60, 60);
+    private static final double ZOOM_STEP = 1.25;
+    private static final double MAX_SOURCE_ZOOM = 8.0;
+
+    protected final TileSource tiles;
+    protected final int sourceWidth;
+    protected final int sourceHeight;
+    private final double sourcePerTileX;
+    private final double sourcePerTileY;
+
+    private double zoom;
+    private double offsetX;
+    private double offsetY;
+    private boolean fitted = true;
+    private Point panStart;
+
+    public TileViewer(TileSource tiles, int sourceWidth, int sourceHeight) {
+        this.tiles = tiles;
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.sourcePerTileX = (double) sourceWidth / tiles.getWidth();
+        this.sourcePerTileY = (double) sourceHeight / tiles.getHeight();
+        setBackground(Color.DARK_GRAY);
+        setOpaque(true);
+        tiles.setTileListener(() -> SwingUtilities.invokeLater(this::repaint));
+
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                panStart = isPanButton(e) ? e.getPoint() : null;
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (panStart != null) {
+                    panBy(e.getX() - panStart.x, e.getY() - panStart.y);
+                    panStart = e.getPoint();
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                panStart = null;
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoomAt(e.getX(), e.getY(), zoom * Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()));
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                if (fitted) {
+                    fitToWindow();
+                } else {
+                    clampOffsets();
+                }
+            }
+        });
+    }
+
+    public void close() {
+        tiles.close();
+    }
+
+    protected boolean isPanButton(MouseEvent e) {
+        return true;
+    }
+
+    public boolean isFitted() {
+        return fitted;
+    }
+
+    public void fitToWindow() {
+        if (getWidth() <= 0 || getHeight() <= 0) {
+            return;
+        }
+        zoom = Math.min((double) getWidth() / tiles.getWidth(), (double) getHeight() / tiles.getHeight());
+        offsetX = (getWidth() - tiles.getWidth() * zoom) / 2;
+        offsetY = (getHeight() - tiles.getHeight() * zoom) / 2;
+        fitted = true;
+        repaint();
+    }
+
+    public void zoomToActualSize(int x, int y) {
+        zoomAt(x, y, 1.0 / sourcePerTileX);
+    }
+
+    private void zoomAt(int x, int y, double requested) {
+        if (zoom <= 0) {
+            return;
+        }
+        double minimum = Math.min(1.0, Math.min((double) getWidth() / tiles.getWidth(), (double) getHeight() / tiles.getHeight()));
+        double next = Math.max(minimum, Math.min(MAX_SOURCE_ZOOM / sourcePerTileX, requested));
+        if (next == zoom) {
+            return;
+        }
+        offsetX = x - (x - offsetX) * next / zoom;
+        offsetY = y - (y - offsetY) * next / zoom;
+        zoom = next;
+        fitted = false;
+        clampOffsets();
+        repaint();
+    }
+
+    private void panBy(int dx, int dy) {
+        offsetX += dx;
+        offsetY += dy;
+        fitted = false;
+        clampOffsets();
+        repaint();
+    }
+
+    private void clampOffsets() {
+        double width = tiles.getWidth() * zoom;
+        double height = tiles.getHeight() * zoom;
+        offsetX = width <= getWidth() ? (getWidth() - width) / 2 : Math.max(getWidth() - width, Math.min(0, offsetX));
+        offsetY = height <= getHeight() ? (getHeight() - height) / 2 : Math.max(getHeight() - height, Math.min(0, offsetY));
+    }
+
+    protected Point toSource(int x, int y) {
+        return new Point((int) Math.round((x - offsetX) / zoom * sourcePerTileX),
+                (int) Math.round((y - offsetY) / zoom * sourcePerTileY));
+    }
+
+    protected Rectangle toScreen(Rectangle source) {
+        int x = screenX(source.x);
+        int y = screenY(source.y);
+        return new Rectangle(x, y, screenX(source.x + source.width) - x, screenY(source.y + source.height) - y);
+    }
+
+    private int screenX(double sourceX) {
+        return (int) Math.floor(offsetX + sourceX / sourcePerTileX * zoom);
+    }
+
+    private int screenY(double sourceY) {
+        return (int) Math.floor(offsetY + sourceY / sourcePerTileY * zoom);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        long start = System.nanoTime();
+        super.paintComponent(g);
+        if (zoom <= 0) {
+            fitToWindow();
+        }
+        Graphics2D g2d = (Graphics2D) g.create();
+        try {
+            Rectangle clip = g2d.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle(0, 0, getWidth(), getHeight());
+            }
+            paintTiles(g2d, clip);
+            paintOverlay(g2d);
+        } finally {
+            g2d.dispose();
+            Metrics.record(Metrics.Stage.PAINT, start, true);
+        }
+    }
+
+    protected void paintOverlay(Graphics2D g2d) {
+    }
+
+    private void paintTiles(Graphics2D g2d, Rectangle clip) {
+        int level = levelFor(zoom);
+        int levelWidth = tiles.getLevelWidth(level);
+        int levelHeight = tiles.getLevelHeight(level);
+        double scaleX = zoom * tiles.getWidth() / levelWidth;
+        double scaleY = zoom * tiles.getHeight() / levelHeight;
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, scaleX < 1.0
+                ? RenderingHints.VALUE_INTERPOLATION_BILINEAR : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        int firstColumn = Math.max(0, (int) Math.floor((clip.x - offsetX) / scaleX / TileSource.TILE_SIZE));
+        int lastColumn = Math.min((levelWidth - 1) / TileSource.TILE_SIZE, (int) Math.floor((clip.x + clip.width - offsetX) / scaleX / TileSource.TILE_SIZE));
+        int firstRow = Math.max(0, (int) Math.floor((clip.y - offsetY) / scaleY / TileSource.TILE_SIZE));
+        int lastRow = Math.min((levelHeight - 1) / TileSource.TILE_SIZE, (int) Math.floor((clip.y + clip.height - offsetY) / scaleY / TileSource.TILE_SIZE));
+        for (int row = firstRow; row <= lastRow; row++) {
+            int y0 = TileSource.TILE_SIZE * row;
+            int y1 = Math.min(levelHeight, y0 + TileSource.TILE_SIZE);
+            int screenY0 = (int) Math.floor(offsetY + y0 * scaleY);
+            int screenY1 = (int) Math.floor(offsetY + y1 * scaleY);
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int x0 = TileSource.TILE_SIZE * column;
+                int x1 = Math.min(levelWidth, x0 + TileSource.TILE_SIZE);
+                int screenX0 = (int) Math.floor(offsetX + x0 * scaleX);
+                int screenX1 = (int) Math.floor(offsetX + x1 * scaleX);
+                BufferedImage tile = tiles.getTile(level, column, row);
+                if (tile != null) {
+                    g2d.drawImage(tile, screenX0, screenY0, screenX1, screenY1, 0, 0, tile.getWidth(), tile.getHeight(), null);
+                } else if (!paintCoarserTile(g2d, level, new Rectangle(x0, y0, x1 - x0, y1 - y0),
+                        new Rectangle(screenX0, screenY0, screenX1 - screenX0, screenY1 - screenY0))) {
+                    g2d.setColor(MISSING_TILE);
+                    g2d.fillRect(screenX0, screenY0, screenX1 - screenX0, screenY1 - screenY0);
+                }
+            }
+        }
+    }
+
+    private boolean paintCoarserTile(Graphics2D g2d, int level, Rectangle area, Rectangle screen) {
+        for (int coarser = level + 1; coarser < tiles.getLevelCount(); coarser++) {
+            double ratioX = (double) tiles.getLevelWidth(coarser) / tiles.getLevelWidth(level);
+            double ratioY = (double) tiles.getLevelHeight(coarser) / tiles.getLevelHeight(level);
+            int column = (int) (area.x * ratioX) / TileSource.TILE_SIZE;
+            int row = (int) (area.y * ratioY) / TileSource.TILE_SIZE;
+            BufferedImage tile = tiles.peekTile(coarser, column, row);
+            if (tile == null) {
+                continue;
+            }
+            int sx0 = (int) Math.floor(area.x * ratioX) - column * TileSource.TILE_SIZE;
+            int sy0 = (int) Math.floor(area.y * ratioY) - row * TileSource.TILE_SIZE;
+            int sx1 = Math.min(tile.getWidth(), (int) Math.ceil((area.x + area.width) * ratioX) - column * TileSource.TILE_SIZE);
+            int sy1 = Math.min(tile.getHeight(), (int) Math.ceil((area.y + area.height) * ratioY) - row * TileSource.TILE_SIZE);
+            g2d.drawImage(tile, screen.x, screen.y, screen.x + screen.width, screen.y + screen.height, sx0, sy0, sx1, sy1, null);
+            return true;
+        }
+        return false;
+    }
+
+    private int levelFor(double zoom) {
+        int level = 0;
+        while (level + 1 < tiles.getLevelCount() && zoom * tiles.getWidth() / tiles.getLevelWidth(level + 1) <= 1.0) {
+            level++;
+        }
+        return level;
+    }
+}
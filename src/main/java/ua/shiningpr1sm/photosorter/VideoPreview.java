@@ -0,0 +1,266 @@
+package ua.shiningpr1sm.photosorter;
+
+import javafx.application.Platform;
+import javafx.embed.swing.JFXPanel;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+import javafx.scene.media.MediaView;
+
+import javax.swing.*;
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class VideoPreview {
+    private static final long RELEASE_TIMEOUT_SECONDS = 10;
+
+    private final Listener listener;
+    private final ExecutorService disposer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "media-dispose");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<File, CompletableFuture<Void>> disposals = new ConcurrentHashMap<>();
+    private final Set<File> readyFiles = ConcurrentHashMap.newKeySet();
+    private MediaView mediaView;
+    private Player current;
+    private Player prepared;
+
+    public interface Listener {
+        void ready(File file);
+
+        void statusChanged(File file, MediaPlayer.Status status);
+
+        void failed(File file);
+    }
+
+    private static final class Player {
+        private final File file;
+        private final MediaPlayer mediaPlayer;
+        private long requestedAt;
+        private Metrics.Stage openStage;
+        private boolean autoPlay;
+        private boolean ready;
+        private boolean reported;
+
+        private Player(File file, MediaPlayer mediaPlayer) {
+            this.file = file;
+            this.mediaPlayer = mediaPlayer;
+        }
+    }
+
+    public VideoPreview(JFXPanel panel, Listener listener) {
+        this.listener = listener;
+        Platform.runLater(() -> {
+            mediaView = new MediaView();
+            Scene scene = new Scene(new Group(mediaView));
+            panel.setScene(scene);
+            mediaView.fitWidthProperty().bind(scene.widthProperty());
+            mediaView.fitHeightProperty().bind(scene.heightProperty());
+            mediaView.setPreserveRatio(true);
+        });
+    }
+
+    public boolean isReady(File file) {
+        return readyFiles.contains(file.getAbsoluteFile());
+    }
+
+    public void show(File file, boolean autoPlay) {
+        long requestedAt = System.nanoTime();
+        File key = file.getAbsoluteFile();
+        Platform.runLater(() -> {
+            if (current != null && current.file.equals(key)) {
+                mediaView.setMediaPlayer(current.mediaPlayer);
+                return;
+            }
+            retire(current);
+            current = null;
+            Player player;
+            if (prepared != null && prepared.file.equals(key)) {
+                player = prepared;
+                prepared = null;
+                player.openStage = Metrics.Stage.VIDEO_OPEN_WARM;
+            } else {
+                player = create(key);
+                if (player == null) {
+                    SwingUtilities.invokeLater(() -> listener.failed(key));
+                    return;
+                }
+                player.openStage = Metrics.Stage.VIDEO_OPEN_COLD;
+            }
+            player.requestedAt = requestedAt;
+            player.autoPlay = autoPlay;
+            current = player;
+            mediaView.setMediaPlayer(player.mediaPlayer);
+            if (player.ready) {
+                onCurrentReady(player);
+            }
+        });
+    }
+
+    public void prepare(File file) {
+        File key = file != null ? file.getAbsoluteFile() : null;
+        Platform.runLater(() -> {
+            if (prepared != null && prepared.file.equals(key) || current != null && current.file.equals(key)) {
+                return;
+            }
+            retire(prepared);
+            prepared = key != null ? create(key) : null;
+        });
+    }
+
+    public void hide() {
+        Platform.runLater(() -> {
+            retire(current);
+            current = null;
+        });
+    }
+
+    public void togglePlayPause() {
+        Platform.runLater(() -> {
+            if (current == null) {
+                return;
+            }
+            MediaPlayer.Status status = current.mediaPlayer.getStatus();
+            if (status == MediaPlayer.Status.PLAYING) {
+                current.mediaPlayer.pause();
+            } else if (status == MediaPlayer.Status.PAUSED || status == MediaPlayer.Status.READY || status == MediaPlayer.Status.STOPPED) {
+                current.mediaPlayer.play();
+            }
+        });
+    }
+
+    public void stop() {
+        Platform.runLater(() -> {
+            if (current != null) {
+                current.mediaPlayer.stop();
+            }
+        });
+    }
+
+    public CompletableFuture<Void> release(File file) {
+        File key = file.getAbsoluteFile();
+        CompletableFuture<Void> released = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            if (current != null && current.file.equals(key)) {
+                retire(current);
+                current = null;
+            }
+            if (prepared != null && prepared.file.equals(key)) {
+                retire(prepared);
+                prepared = null;
+            }
+            CompletableFuture<Void> pending = disposals.get(key);
+            if (pending == null) {
+                released.complete(null);
+            } else {
+                pending.whenComplete((ignored, error) -> released.complete(null));
+            }
+        });
+        return released.completeOnTimeout(null, RELEASE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public void releaseAll() {
+        Platform.runLater(() -> {
+            retire(current);
+            retire(prepared);
+            current = null;
+            prepared = null;
+        });
+    }
+
+    private Player create(File file) {
+        MediaPlayer mediaPlayer;
+        try {
+            mediaPlayer = new MediaPlayer(new Media(file.toURI().toString()));
+        } catch (RuntimeException e) {
+            System.err.println("Error creating JavaFX media: " + e.getMessage());
+            return null;
+        }
+        Player player = new Player(file, mediaPlayer);
+        mediaPlayer.setOnReady(() -> {
+            player.ready = true;
+            readyFiles.add(file);
+            if (player == current) {
+                onCurrentReady(player);
+            } else {
+                mediaPlayer.seek(mediaPlayer.getStartTime());
+            }
+        });
+        mediaPlayer.setOnError(() -> {
+            System.err.println("JavaFX MediaPlayer Error: " + mediaPlayer.getError());
+            boolean wasCurrent = player == current;
+            if (wasCurrent) {
+                if (!player.reported) {
+                    player.reported = true;
+                    Metrics.record(player.openStage, player.requestedAt, false);
+                }
+                current = null;
+            } else if (player == prepared) {
+                prepared = null;
+            }
+            retire(player);
+            if (wasCurrent) {
+                SwingUtilities.invokeLater(() -> listener.failed(file));
+            }
+        });
+        mediaPlayer.setOnEndOfMedia(() -> {
+            mediaPlayer.stop();
+            mediaPlayer.seek(mediaPlayer.getStartTime());
+        });
+        mediaPlayer.statusProperty().addListener((obs, oldStatus, newStatus) -> {
+            if (player == current) {
+                SwingUtilities.invokeLater(() -> listener.statusChanged(file, newStatus));
+            }
+        });
+        return player;
+    }
+
+    private void onCurrentReady(Player player) {
+        if (!player.reported) {
+            player.reported = true;
+            Metrics.record(player.openStage, player.requestedAt, true);
+        }
+        if (player.autoPlay) {
+            player.mediaPlayer.play();
+        } else {
+            player.mediaPlayer.seek(player.mediaPlayer.getStartTime());
+        }
+        MediaPlayer.Status status = player.mediaPlayer.getStatus();
+        SwingUtilities.invokeLater(() -> {
+            listener.statusChanged(player.file, status);
+            listener.ready(player.file);
+        });
+    }
+
+    private void retire(Player player) {
+        if (player == null) {
+            return;
+        }
+        readyFiles.remove(player.file);
+        if (mediaView != null && mediaView.getMediaPlayer() == player.mediaPlayer) {
+            mediaView.setMediaPlayer(null);
+        }
+        MediaPlayer mediaPlayer = player.mediaPlayer;
+        mediaPlayer.setOnReady(null);
+        mediaPlayer.setOnError(null);
+        mediaPlayer.setOnEndOfMedia(null);
+        mediaPlayer.stop();
+        CompletableFuture<Void> disposal = CompletableFuture.runAsync(mediaPlayer::dispose, disposer);
+        CompletableFuture<Void> pending = disposals.compute(player.file,
+                (file, previous) -> previous == null ? disposal : CompletableFuture.allOf(previous, disposal));
+        pending.whenComplete((ignored, error) -> {
+            if (error != null) {
+                System.err.println("Error disposing media player for " + player.file.getName() + ": " + error.getMessage());
+            }
+            disposals.remove(player.file, pending);
+        });
+    }
+}